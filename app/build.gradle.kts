@@ -8,6 +8,9 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+
+    // Adds the jmh source set for microbenchmarks. Run with ./gradlew jmh
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -39,7 +42,52 @@ application {
     mainClass.set("lakkie.flight.App")
 }
 
+// Preprocesses the text world map into the binary map loaded at startup
+val worldMapDir = layout.buildDirectory.dir("generated/worldMap")
+val convertWorldMap by tasks.registering(JavaExec::class) {
+    description = "Converts World.txt into the binary World.fmap"
+    classpath = sourceSets.main.get().output.classesDirs
+    mainClass.set("lakkie.flight.globepanel.BinaryWorldMap")
+    val textMap = file("src/main/resources/World.txt")
+    val binaryMap = worldMapDir.map { it.file("World.fmap") }
+    inputs.file(textMap)
+    outputs.file(binaryMap)
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(textMap.absolutePath, binaryMap.get().asFile.absolutePath)
+    })
+}
+
+sourceSets.main {
+    resources.srcDir(files(worldMapDir).builtBy(convertWorldMap))
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    // Allocation rate matters as much as time for the parsing benchmarks
+    profilers.add("gc")
+    // Machine readable, so results can be compared between builds
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
+
 tasks.named<Test>("test") {
-    // Use JUnit Platform for unit tests.
-    useJUnitPlatform()
+    // Use JUnit Platform for unit tests. The load tests are slow, so they only run with ./gradlew loadTest
+    useJUnitPlatform {
+        excludeTags("load")
+    }
+}
+
+// Drives the tracker and an offscreen map against a local stub server with up to 100k aircraft
+val loadTest by tasks.registering(Test::class) {
+    description = "Runs the load tests tagged \"load\" and prints how each stage scales"
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("load")
+    }
+    systemProperty("java.awt.headless", "true")
+    maxHeapSize = "2g"
+    testLogging.showStandardStreams = true
+    outputs.upToDateWhen { false }
 }
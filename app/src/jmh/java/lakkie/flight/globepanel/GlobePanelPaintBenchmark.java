@@ -0,0 +1,89 @@
+package lakkie.flight.globepanel;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+
+/**
+ * Time to paint one frame of the map into an offscreen image, centred on Europe at different zoom levels. With
+ * viewport culling the frame time should fall as the zoom increases and less of the world is on screen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GlobePanelPaintBenchmark {
+
+    private static final int FRAME_WIDTH = 1280, FRAME_HEIGHT = 720;
+
+    @Param({ "0.1", "0.5", "1", "4", "10" })
+    public float zoom;
+
+    @Param({ "1000", "20000", "100000" })
+    public int aircraftCount;
+
+    private GlobePanel panel;
+    private BufferedImage frame;
+
+    @Setup
+    public void createPanel() {
+        panel = new GlobePanel();
+        panel.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+        panel.getMapLoaded().join();
+
+        PlaneColumns aircraft = new PlaneColumns(aircraftCount);
+        CallsignTable callsigns = panel.planes.getCallsigns();
+        Random random = new Random(6);
+        int[] changed = new int[aircraftCount];
+        for (int i = 0; i < aircraftCount; i++) {
+            aircraft.lat[i] = random.nextDouble() * 140 - 65;
+            aircraft.lng[i] = random.nextDouble() * 360 - 180;
+            Point screenPoint = panel.projector.projectToScreen(aircraft.lat[i], aircraft.lng[i]);
+            aircraft.x[i] = (float) screenPoint.x();
+            aircraft.y[i] = (float) screenPoint.y();
+            aircraft.callsignId[i] = callsigns.intern(String.format("abc%04d", i % 5000));
+            changed[i] = i;
+        }
+        aircraft.size = aircraftCount;
+        panel.planes.publish(aircraft, changed, aircraftCount);
+
+        Point europe = panel.projector.projectToScreen(50, 10);
+        panel.setCamera((int) europe.x() - FRAME_WIDTH / 2, (int) europe.y() - FRAME_HEIGHT / 2, zoom);
+        frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @TearDown
+    public void flush() {
+        frame.flush();
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        Graphics2D g2d = frame.createGraphics();
+        try {
+            panel.paintComponent(g2d);
+        } finally {
+            g2d.dispose();
+        }
+        return frame;
+    }
+
+}
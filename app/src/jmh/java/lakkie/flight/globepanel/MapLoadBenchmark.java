@@ -0,0 +1,82 @@
+package lakkie.flight.globepanel;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to load the world map at startup, parsing World.txt compared with reading the same shapes from a binary map.
+ * Both read from memory or the page cache, so this is the parsing cost rather than disk speed. mapCopies repeats every
+ * shape to stand in for a more detailed map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapLoadBenchmark {
+
+    @Param({ "1", "4" })
+    public int mapCopies;
+
+    private String textMap;
+    private byte[] binaryMap;
+    private Path binaryMapFile;
+
+    @Setup
+    public void createMaps() throws IOException {
+        try (InputStream input = MapLoadBenchmark.class.getResourceAsStream("/World.txt")) {
+            textMap = new String(input.readAllBytes(), StandardCharsets.UTF_8).strip().concat("\n").repeat(mapCopies);
+        }
+        List<MapShapeData> shapes = MapShapeData.parseWorldMapFile(new Scanner(textMap));
+
+        binaryMapFile = Files.createTempFile("World", ".fmap");
+        try (OutputStream out = Files.newOutputStream(binaryMapFile)) {
+            BinaryWorldMap.write(shapes, out);
+        }
+        binaryMap = Files.readAllBytes(binaryMapFile);
+    }
+
+    @TearDown
+    public void deleteMap() throws IOException {
+        Files.delete(binaryMapFile);
+    }
+
+    @Benchmark
+    public List<MapShapeData> text() {
+        return MapShapeData.parseWorldMapFile(new Scanner(new ByteArrayInputStream(textMap.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Benchmark
+    public List<MapShapeData> binaryInMemory() throws IOException {
+        return BinaryWorldMap.read(ByteBuffer.wrap(binaryMap));
+    }
+
+    @Benchmark
+    public List<MapShapeData> binaryMapped() throws IOException {
+        return BinaryWorldMap.load(binaryMapFile);
+    }
+
+}
@@ -0,0 +1,79 @@
+package lakkie.flight.globepanel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+
+/**
+ * Points projected per microsecond, one at a time through projectToScreen compared with the batch methods. Each
+ * invocation projects every point once, so the scores are per point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int POINTS = 20_000;
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+    private final double[] lat = new double[POINTS], lng = new double[POINTS];
+    private final float[] x = new float[POINTS], y = new float[POINTS];
+    /**
+     * Every other point, like the changed aircraft in a poll
+     */
+    private final int[] indices = new int[POINTS / 2];
+
+    @Setup
+    public void createPoints() {
+        Random random = new Random(12);
+        for (int i = 0; i < POINTS; i++) {
+            lat[i] = random.nextDouble() * 140 - 65;
+            lng[i] = random.nextDouble() * 360 - 180;
+        }
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i * 2;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float[] scalar() {
+        for (int i = 0; i < POINTS; i++) {
+            Point screenPoint = projector.projectToScreen(lat[i], lng[i]);
+            x[i] = (float) screenPoint.x();
+            y[i] = (float) screenPoint.y();
+        }
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public float[] batch() {
+        projector.projectToScreen(lat, lng, x, y, POINTS);
+        return x;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS / 2)
+    public float[] batchIndexed() {
+        projector.projectToScreen(lat, lng, x, y, indices, indices.length);
+        return x;
+    }
+
+}
@@ -0,0 +1,134 @@
+package lakkie.flight.tracking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading a flight list through the JSON tree against streaming it with {@link FR24FeedParser}.
+ * Run with the gc profiler to see the allocation rate of each.
+ *
+ * Feeds are either generated or built from SampleFeed.json, a hand-written sample of flights in the tracker server's
+ * format with a mix of full, sparse and on-ground entries. The sample is parsed and written back out with its flights
+ * repeated under new IDs until there are aircraftCount of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedParseBenchmark {
+
+    @Param({ "100", "1000", "15000", "100000" })
+    public int aircraftCount;
+
+    @Param({ "generated", "sample" })
+    public String feedSource;
+
+    private byte[] feed;
+    private final FR24FeedParser parser = new FR24FeedParser();
+    private final FR24AircraftColumns flights = new FR24AircraftColumns();
+
+    @Setup
+    public void createFeed() throws IOException {
+        String text = switch (feedSource) {
+            case "generated" -> generateFeed(aircraftCount, 24L);
+            case "sample" -> repeatFeed(loadSampleFlights(), aircraftCount);
+            default -> throw new IllegalArgumentException("Unknown feed source " + feedSource);
+        };
+        feed = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<FR24Aircraft> jsonTree() throws IOException {
+        // Includes decoding the body to a String, as BodyHandlers.ofString() did
+        return FR24TrackerResults.parseFlightList(new String(feed, StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public int streaming() throws IOException {
+        return parser.parse(new ByteArrayInputStream(feed), flights);
+    }
+
+    /**
+     * Builds a flight list in the same shape the tracker server returns.
+     */
+    static String generateFeed(int aircraftCount, long seed) {
+        Random random = new Random(seed);
+        StringBuilder feed = new StringBuilder(aircraftCount * 160).append('{');
+        for (int i = 0; i < aircraftCount; i++) {
+            if (i > 0) {
+                feed.append(',');
+            }
+            String callsign = String.format("%c%c%c%d", 'A' + random.nextInt(26), 'A' + random.nextInt(26),
+                'A' + random.nextInt(26), random.nextInt(9000) + 100);
+            feed.append(String.format(Locale.ROOT,
+                "\"%08x\":[\"%06X\",%.4f,%.4f,%d,%d,%d,\"%04d\",\"F-EGLL1\",\"A320\",\"G-ABCD\",%d,\"LHR\",\"JFK\",\"%s\",0,%d,\"%s\",0,\"%s\"]",
+                0x2f000000 + i, random.nextInt(0xFFFFFF), random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180,
+                random.nextInt(360), random.nextInt(45000), random.nextInt(600), random.nextInt(7777),
+                1700000000 + i, callsign, random.nextInt(4000) - 2000, callsign, callsign.substring(0, 3)));
+        }
+        return feed.append('}').toString();
+    }
+
+    /**
+     * @return Every flight in SampleFeed.json
+     */
+    static FR24AircraftColumns loadSampleFlights() throws IOException {
+        FR24AircraftColumns sample = new FR24AircraftColumns();
+        try (InputStream input = FeedParseBenchmark.class.getResourceAsStream("/SampleFeed.json")) {
+            if (input == null) {
+                throw new IOException("Missing SampleFeed.json");
+            }
+            new FR24FeedParser().parse(input, sample);
+        }
+        return sample;
+    }
+
+    /**
+     * Builds a flight list of aircraftCount flights by cycling through sample, giving each a new ID. Properties the
+     * parsers don't read are written as empty placeholders.
+     */
+    static String repeatFeed(FR24AircraftColumns sample, int aircraftCount) {
+        if (sample.size == 0) {
+            throw new IllegalArgumentException("No flights to repeat");
+        }
+        StringBuilder feed = new StringBuilder(aircraftCount * 160).append('{');
+        for (int i = 0; i < aircraftCount; i++) {
+            if (i > 0) {
+                feed.append(',');
+            }
+            int k = i % sample.size;
+            feed.append(String.format(Locale.ROOT, "\"%08x\":[%s,%s,%s,%s,%s,%s,\"\",\"\",\"\",\"\",0,\"\",\"\",\"\",0,0,\"\",0,\"\"]",
+                0x35000000 + i, quote(sample.callsign[k]), sample.lat[k], sample.lng[k], sample.heading[k],
+                sample.altitude[k], sample.speed[k]));
+        }
+        return feed.append('}').toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+}
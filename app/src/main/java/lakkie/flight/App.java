@@ -1,21 +1,102 @@
 package lakkie.flight;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 
+import lakkie.flight.globepanel.GeoBounds;
 import lakkie.flight.globepanel.GlobePanel;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackReplayer;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.metrics.Metrics;
+import lakkie.flight.tracking.HeadlessTracker;
 
 public class App {
-    
-    private static void constructFrame() {
+
+    private static void constructFrame(TrackStore recording, double replaySpeed) {
         JFrame mapFrame = new JFrame("Flight Tracker");
         mapFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        GlobePanel.addToFrame(mapFrame);
+        GlobePanel globePanel = GlobePanel.addToFrame(mapFrame);
+        if (recording != null) {
+            globePanel.startReplay(recording, replaySpeed);
+        } else {
+            globePanel.startTracking();
+        }
         mapFrame.setVisible(true);
-    }    
+    }
+
+    /**
+     * Tracks flights without a window until killed, writing them to a history directory or as CSV to stdout.
+     * @param shards How many regions to split the world into, as "&lt;lat&gt;x&lt;lng&gt;"
+     */
+    private static void runHeadless(String shards, String historyDir) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        String[] counts = shards.split("x");
+        if (counts.length != 2) {
+            throw new IllegalArgumentException("Shards should look like 2x4, got: " + shards);
+        }
+        List<GeoBounds> regions = GeoBounds.WORLD.split(Integer.parseInt(counts[0]), Integer.parseInt(counts[1]));
+        TrackStore history = (historyDir != null) ? new TrackStore(Path.of(historyDir)) : null;
+        HeadlessTracker tracker = new HeadlessTracker(System.getProperty("FR24_SERVER_URL"),
+            new ProjectionConverter(20450, 10350, 0, 0), regions);
+        if (history != null) {
+            tracker.setHistory(history);
+            System.err.printf("Recording flight history to %s (%d records already there)\n", historyDir, history.size());
+        } else {
+            System.out.println(HeadlessTracker.CSV_HEADER);
+            tracker.setOutput(System.out);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            tracker.close();
+            if (history != null) {
+                history.close();
+            }
+        }, "Stop Tracking"));
+        System.err.printf("Tracking %d regions headless\n", regions.size());
+        tracker.start();
+        // The workers are virtual threads, which don't keep the program running on their own
+        Thread.currentThread().join();
+    }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(App::constructFrame);
+    /**
+     * Tracks flights live, or with "replay &lt;history dir&gt; [speed]" plays back flights recorded with the
+     * TRACK_HISTORY_DIR system property, or with "headless [shards] [history dir]" tracks without a window. In every
+     * mode the metrics are visible over JMX under lakkie.flight.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Metrics.registerMBeans();
+        if (args.length > 0 && args[0].equals("headless")) {
+            if (args.length > 3) {
+                System.err.println("Usage: App headless [<lat shards>x<lng shards>] [history dir]");
+                System.exit(1);
+            }
+            runHeadless((args.length > 1) ? args[1] : "1x1", (args.length > 2) ? args[2] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("replay")) {
+            if (args.length < 2 || args.length > 3) {
+                System.err.println("Usage: App replay <history dir> [speed]");
+                System.exit(1);
+            }
+            double speed = (args.length == 3) ? Double.parseDouble(args[2]) : TrackReplayer.MIN_SPEED;
+            TrackStore recording;
+            try {
+                recording = TrackStore.openReadOnly(Path.of(args[1]));
+            } catch (IOException e) {
+                System.err.println("Can't replay: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+            System.out.printf("Replaying %d records at %.0fx\n", recording.size(), speed);
+            SwingUtilities.invokeLater(() -> constructFrame(recording, speed));
+            return;
+        }
+        SwingUtilities.invokeLater(() -> constructFrame(null, 0));
     }
 }
@@ -0,0 +1,175 @@
+package lakkie.flight.globepanel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Preprocessed world map, so startup doesn't have to parse the text map. All values are big endian:
+ *
+ * <pre>
+ * Header:      int magic ("FMAP"), int version, int shapeCount, int vertexCount
+ * Shape table: shapeCount of { int flags, int numPoints, float offsetX, float offsetY, int firstVertex }
+ * Vertices:    float x[vertexCount], then float y[vertexCount]
+ * </pre>
+ *
+ * Each shape's points are exactly the xPoints and yPoints the text parser would have produced, starting with the
+ * (0, 0) point at the offset. Run main to convert a text map.
+ */
+public class BinaryWorldMap {
+
+    public static final int MAGIC = 0x464D4150;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    private static final int SHAPE_BYTES = 5 * Integer.BYTES;
+    private static final int FLAG_RELATIVE = 1;
+
+    private BinaryWorldMap() { }
+
+    /**
+     * Converts a text world map into the binary format.
+     * @param args The text map to read, then the binary map to write
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BinaryWorldMap <text map> <binary map>");
+            System.exit(1);
+        }
+
+        List<MapShapeData> shapes;
+        try (Scanner input = new Scanner(Path.of(args[0]))) {
+            shapes = MapShapeData.parseWorldMapFile(input);
+        }
+        Path output = Path.of(args[1]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(output)) {
+            write(shapes, out);
+        }
+        System.out.printf("Wrote %d shapes to %s (%d bytes)%n", shapes.size(), output, Files.size(output));
+    }
+
+    public static void write(List<MapShapeData> shapes, OutputStream output) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        int vertexCount = 0;
+        for (MapShapeData shape : shapes) {
+            vertexCount += shape.numPoints;
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(shapes.size());
+        out.writeInt(vertexCount);
+
+        int firstVertex = 0;
+        for (MapShapeData shape : shapes) {
+            out.writeInt(shape.relativePoints ? FLAG_RELATIVE : 0);
+            out.writeInt(shape.numPoints);
+            out.writeFloat(shape.offsetX);
+            out.writeFloat(shape.offsetY);
+            out.writeInt(firstVertex);
+            firstVertex += shape.numPoints;
+        }
+
+        for (MapShapeData shape : shapes) {
+            for (int i = 0; i < shape.numPoints; i++) {
+                out.writeFloat(shape.xPoints[i]);
+            }
+        }
+        for (MapShapeData shape : shapes) {
+            for (int i = 0; i < shape.numPoints; i++) {
+                out.writeFloat(shape.yPoints[i]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads every shape from a binary map. Vertices are bulk copied straight out of the buffer.
+     */
+    public static List<MapShapeData> read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary world map");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported binary world map version. Expected: %d, got: %d", VERSION, version));
+        }
+        int shapeCount = buffer.getInt(8);
+        int vertexCount = buffer.getInt(12);
+        int verticesStart = HEADER_BYTES + shapeCount * SHAPE_BYTES;
+        if (shapeCount < 0 || vertexCount < 0
+                || buffer.limit() != verticesStart + 2L * vertexCount * Float.BYTES) {
+            throw new IOException("Binary world map is truncated or corrupt");
+        }
+
+        FloatBuffer xVertices = buffer.slice(verticesStart, vertexCount * Float.BYTES).asFloatBuffer();
+        FloatBuffer yVertices = buffer.slice(verticesStart + vertexCount * Float.BYTES, vertexCount * Float.BYTES).asFloatBuffer();
+        List<MapShapeData> shapes = new ArrayList<>(shapeCount);
+        for (int s = 0; s < shapeCount; s++) {
+            int entry = HEADER_BYTES + s * SHAPE_BYTES;
+            boolean relative = (buffer.getInt(entry) & FLAG_RELATIVE) != 0;
+            int numPoints = buffer.getInt(entry + 4);
+            float offsetX = buffer.getFloat(entry + 8);
+            float offsetY = buffer.getFloat(entry + 12);
+            int firstVertex = buffer.getInt(entry + 16);
+            if (numPoints < 1 || firstVertex < 0 || firstVertex > vertexCount - numPoints) {
+                throw new IOException(String.format("Shape %d has vertices outside the map", s));
+            }
+
+            float[] xPoints = new float[numPoints];
+            float[] yPoints = new float[numPoints];
+            xVertices.get(firstVertex, xPoints);
+            yVertices.get(firstVertex, yPoints);
+            shapes.add(MapShapeData.fromPoints(offsetX, offsetY, xPoints, yPoints, relative));
+        }
+        return shapes;
+    }
+
+    /**
+     * Memory maps a binary map file and reads it.
+     */
+    public static List<MapShapeData> load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a binary map from the classpath. It's memory mapped if it's a plain file, otherwise read into memory, such
+     * as when it's inside a jar.
+     * @return The shapes, or null if there is no such resource
+     */
+    public static List<MapShapeData> loadResource(String name) throws IOException {
+        URL url = BinaryWorldMap.class.getResource(name);
+        if (url == null) {
+            return null;
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return load(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                // Fall through and read it as a stream instead
+            }
+        }
+        try (InputStream input = url.openStream()) {
+            return read(ByteBuffer.wrap(input.readAllBytes()));
+        }
+    }
+
+}
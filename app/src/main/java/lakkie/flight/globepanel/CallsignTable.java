@@ -0,0 +1,41 @@
+package lakkie.flight.globepanel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Gives every distinct callsign a small integer ID so that {@link PlaneColumns} can store callsigns in an int array.
+ *
+ * Only the tracker thread may intern callsigns. Any thread may look up the name of an ID it got from a published
+ * {@link PlaneColumns}, since the name is always stored before the columns holding its ID are published.
+ */
+public class CallsignTable {
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private volatile String[] names = new String[1024];
+    private int count = 0;
+
+    public int intern(String callsign) {
+        Integer id = idsByName.get(callsign);
+        if (id != null) {
+            return id;
+        }
+
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = callsign;
+        idsByName.put(callsign, count);
+        return count++;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return count;
+    }
+
+}
@@ -0,0 +1,212 @@
+package lakkie.flight.globepanel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import javax.swing.SwingUtilities;
+
+import lakkie.flight.metrics.Metrics;
+
+/**
+ * Renders frames at a capped rate instead of once per input event. Anything that changes what's on screen calls
+ * {@link #requestFrame()} from any thread, which only sets a flag. A ticker thread checks the flag once per frame
+ * period and, if it's set, hands one frame to the event dispatch thread, so any number of requests between ticks cost
+ * a single render.
+ *
+ * No new frame is handed over while the last one is still waiting to render, so a slow frame lowers the frame rate
+ * rather than queueing work up on the event dispatch thread.
+ */
+public class FrameScheduler implements AutoCloseable {
+
+    /**
+     * How many recent frames the statistics cover
+     */
+    private static final int STATS_FRAMES = 128;
+
+    private final Runnable renderer;
+    private final Executor frameExecutor;
+    private final ScheduledExecutorService ticker;
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    /**
+     * Set while a frame has been handed to the event dispatch thread and hasn't finished rendering
+     */
+    private final AtomicBoolean framePending = new AtomicBoolean(false);
+    private volatile BooleanSupplier animating = () -> false;
+    private volatile int maxFramesPerSecond;
+    private ScheduledFuture<?> tick = null;
+
+    // Guarded by frameTimes
+    private final long[] frameTimes = new long[STATS_FRAMES];
+    private final long[] frameEnds = new long[STATS_FRAMES];
+    private long frames = 0;
+    private long requests = 0;
+
+    /**
+     * @param renderer Draws one frame. Always called on the event dispatch thread.
+     */
+    public FrameScheduler(int maxFramesPerSecond, Runnable renderer) {
+        this(maxFramesPerSecond, renderer, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param renderer Draws one frame
+     * @param frameExecutor Runs each frame handed over by a tick, in place of the event dispatch thread
+     */
+    public FrameScheduler(int maxFramesPerSecond, Runnable renderer, Executor frameExecutor) {
+        if (maxFramesPerSecond < 1) {
+            throw new IllegalArgumentException("Frame rate cap must be at least 1, got: " + maxFramesPerSecond);
+        }
+        this.maxFramesPerSecond = maxFramesPerSecond;
+        this.renderer = renderer;
+        this.frameExecutor = frameExecutor;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Frame Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts rendering requested frames.
+     */
+    public synchronized void start() {
+        if (tick != null) {
+            tick.cancel(false);
+        }
+        tick = ticker.scheduleAtFixedRate(this::tick, 0, 1_000_000_000L / maxFramesPerSecond, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Marks the screen as out of date, so a frame is rendered on the next tick. Safe to call from any thread.
+     */
+    public void requestFrame() {
+        dirty.set(true);
+        synchronized (frameTimes) {
+            requests++;
+        }
+    }
+
+    /**
+     * Renders a frame every tick while animating returns true, such as while aircraft are being dead reckoned.
+     * @param animating Called on the ticker thread
+     */
+    public void setAnimating(BooleanSupplier animating) {
+        this.animating = animating;
+    }
+
+    public int getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    /**
+     * Changes the frame rate cap, taking effect straight away if already started.
+     */
+    public synchronized void setMaxFramesPerSecond(int maxFramesPerSecond) {
+        if (maxFramesPerSecond < 1) {
+            throw new IllegalArgumentException("Frame rate cap must be at least 1, got: " + maxFramesPerSecond);
+        }
+        this.maxFramesPerSecond = maxFramesPerSecond;
+        if (tick != null) {
+            start();
+        }
+    }
+
+    /**
+     * Statistics for the last few frames rendered. Safe to call from any thread.
+     */
+    public FrameStats getStats() {
+        synchronized (frameTimes) {
+            int count = (int) Math.min(frames, STATS_FRAMES);
+            if (count == 0) {
+                return new FrameStats(0, requests, 0, 0, 0);
+            }
+            long total = 0, worst = 0;
+            for (int i = 0; i < count; i++) {
+                total += frameTimes[i];
+                worst = Math.max(worst, frameTimes[i]);
+            }
+            int newest = (int) ((frames - 1) % STATS_FRAMES);
+            int oldest = (int) ((frames - count) % STATS_FRAMES);
+            long span = frameEnds[newest] - frameEnds[oldest];
+            double framesPerSecond = (span > 0) ? (count - 1) * 1e9 / span : 0;
+            return new FrameStats(frames, requests, framesPerSecond, total / 1e6 / count, worst / 1e6);
+        }
+    }
+
+    /**
+     * Stops rendering frames. A frame already handed to the event dispatch thread still renders.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        try {
+            ticker.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands a frame over if one has been requested or animating is on, and no frame is still waiting to render. Called
+     * every frame period once started, and can be called directly to step frames without the ticker thread.
+     */
+    public void tick() {
+        try {
+            if (framePending.get()) {
+                // Leave the flag set, so the request is picked up once the pending frame is done
+                if (dirty.get() || animating.getAsBoolean()) {
+                    Metrics.DROPPED_FRAMES.increment();
+                }
+                return;
+            }
+            if (dirty.getAndSet(false) | animating.getAsBoolean()) {
+                framePending.set(true);
+                frameExecutor.execute(this::renderFrame);
+            }
+        } catch (RuntimeException e) {
+            // Anything thrown here would stop the ticker running again
+            System.err.println("Unexpected error while scheduling a frame!");
+            e.printStackTrace();
+        }
+    }
+
+    private void renderFrame() {
+        long startTime = System.nanoTime();
+        try {
+            renderer.run();
+        } finally {
+            long endTime = System.nanoTime();
+            synchronized (frameTimes) {
+                int slot = (int) (frames % STATS_FRAMES);
+                frameTimes[slot] = endTime - startTime;
+                frameEnds[slot] = endTime;
+                frames++;
+            }
+            framePending.set(false);
+        }
+    }
+
+    /**
+     * @param frames Frames rendered since the scheduler was created
+     * @param requests Frames requested since the scheduler was created. Most are coalesced into a shared frame.
+     * @param framesPerSecond The recent frame rate
+     * @param averageFrameMillis How long recent frames took to render on average
+     * @param worstFrameMillis How long the slowest recent frame took to render
+     */
+    public record FrameStats(long frames, long requests, double framesPerSecond, double averageFrameMillis,
+            double worstFrameMillis) {
+
+        @Override
+        public final String toString() {
+            return String.format("%.1f fps, %.2fms avg, %.2fms worst (%d frames for %d requests)", framesPerSecond,
+                averageFrameMillis, worstFrameMillis, frames, requests);
+        }
+
+    }
+
+}
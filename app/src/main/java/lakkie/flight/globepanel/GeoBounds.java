@@ -0,0 +1,63 @@
+package lakkie.flight.globepanel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A latitude and longitude box, in degrees. Never crosses the antimeridian, since the map doesn't wrap.
+ */
+public record GeoBounds(double minLat, double minLng, double maxLat, double maxLng) {
+
+    public static final GeoBounds WORLD = new GeoBounds(-90, -180, 90, 180);
+
+    public boolean contains(double lat, double lng) {
+        return lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng;
+    }
+
+    public boolean contains(GeoBounds other) {
+        return other.minLat >= minLat && other.maxLat <= maxLat && other.minLng >= minLng && other.maxLng <= maxLng;
+    }
+
+    /**
+     * @return The size of the box in square degrees
+     */
+    public double area() {
+        return (maxLat - minLat) * (maxLng - minLng);
+    }
+
+    /**
+     * Grows the box on every side by a fraction of its size, without going past the edge of the world.
+     */
+    public GeoBounds padded(double fraction) {
+        double padLat = (maxLat - minLat) * fraction, padLng = (maxLng - minLng) * fraction;
+        return new GeoBounds(Math.max(-90, minLat - padLat), Math.max(-180, minLng - padLng),
+            Math.min(90, maxLat + padLat), Math.min(180, maxLng + padLng));
+    }
+
+    /**
+     * Cuts the box into a grid of equal boxes, row by row from the south west corner. Neighbouring boxes share an
+     * edge.
+     */
+    public List<GeoBounds> split(int latShards, int lngShards) {
+        if (latShards < 1 || lngShards < 1) {
+            throw new IllegalArgumentException(String.format("Can't split into %dx%d shards", latShards, lngShards));
+        }
+        List<GeoBounds> shards = new ArrayList<>(latShards * lngShards);
+        double latStep = (maxLat - minLat) / latShards, lngStep = (maxLng - minLng) / lngShards;
+        for (int row = 0; row < latShards; row++) {
+            for (int column = 0; column < lngShards; column++) {
+                // The last shard in each direction ends exactly on the edge, whatever the rounding
+                shards.add(new GeoBounds(minLat + row * latStep, minLng + column * lngStep,
+                    (row == latShards - 1) ? maxLat : minLat + (row + 1) * latStep,
+                    (column == lngShards - 1) ? maxLng : minLng + (column + 1) * lngStep));
+            }
+        }
+        return shards;
+    }
+
+    @Override
+    public final String toString() {
+        return String.format("lat %.2f to %.2f, lng %.2f to %.2f", minLat, maxLat, minLng, maxLng);
+    }
+
+}
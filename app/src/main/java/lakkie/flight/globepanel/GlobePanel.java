@@ -6,8 +6,11 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.Image;
+import java.awt.Window;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
@@ -15,11 +18,22 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferStrategy;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -27,8 +41,13 @@ import javax.swing.SwingUtilities;
 
 import javax.imageio.ImageIO;
 
+import lakkie.flight.globepanel.ProjectionConverter.LatLng;
 import lakkie.flight.globepanel.ProjectionConverter.Point;
-import lakkie.flight.tracking.FR24Aircraft;
+import lakkie.flight.tracking.FR24TrackerResults;
+import lakkie.flight.history.TrackReplayer;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.metrics.LatencyHistogram;
+import lakkie.flight.metrics.Metrics;
 import lakkie.flight.tracking.FR24TrackerThread;
 
 public class GlobePanel extends JPanel implements MouseMotionListener, MouseListener, MouseWheelListener, KeyListener {
@@ -36,7 +55,41 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
     private static final float MIN_CAMERA_ZOOM = 0.1f, MAX_CAMERA_ZOOM = 10f;
     private static final float CAMERA_ZOOM_MULTIPLIER = 1.025f;
 
+    /**
+     * Rough extent of everything drawn in world space, used to lay out spatial grids
+     */
+    private static final float WORLD_MIN_X = -400, WORLD_MIN_Y = -200, WORLD_MAX_X = 20100, WORLD_MAX_Y = 10200;
+    private static final int WORLD_GRID_COLUMNS = 128, WORLD_GRID_ROWS = 64;
+    /**
+     * How far past the edge of the screen to still draw things, in world units, so strokes and callsigns that
+     * straddle the edge aren't cut off
+     */
+    private static final float VIEW_MARGIN = 50;
+    /**
+     * Memory the rasterized map tiles may use, enough for a 4K screen of tiles with room to pan
+     */
+    private static final long MAP_TILE_BUDGET_BYTES = 64L * 1024 * 1024;
+    /**
+     * Frame rate cap, unless overridden with the MAX_FPS system property
+     */
+    private static final int DEFAULT_MAX_FPS = 60;
+    /**
+     * How far each key press seeks a replay
+     */
+    private static final long REPLAY_SEEK_MS = 60_000L;
+
+    private static final BasicStroke MAP_STROKE = new BasicStroke(5.f);
+    private static final BasicStroke PLANE_STROKE = new BasicStroke(2.f);
+
     private static final Font PLANE_INFO_FONT = new Font("Courier New", Font.BOLD, 6);
+    /**
+     * Memory the pre-rendered callsign labels may use
+     */
+    private static final long LABEL_BUDGET_BYTES = 16L * 1024 * 1024;
+    /**
+     * Below this zoom callsigns are too small to read, so only the aircraft are drawn
+     */
+    private static final float MIN_LABEL_ZOOM = 0.5f;
     private static final Font DEBUG_FONT = new Font("Courier New", Font.PLAIN, 14);
 
     /**
@@ -77,17 +130,70 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
 
     private boolean drawMapInfo = false;
 
+    /**
+     * Toggled with M to list every metric under the debug info
+     */
+    private boolean showMetrics = false;
+
     public final ProjectionConverter projector;
-    private final MapShapeGenerator mapShapeGenerator;
-    private final List<MapShapeData> mapShapes;
+    /**
+     * Every shape in the world map. Empty until the map has loaded.
+     */
+    private volatile List<MapShapeData> mapShapes = List.of();
+    /**
+     * Bounding boxes of mapShapes. Null until the map has loaded.
+     */
+    private volatile SpatialGrid mapShapeIndex = null;
+    /**
+     * Completes once every map shape has been loaded and every level of detail generated. The map is drawn as soon as
+     * the coarsest level is ready, before this completes.
+     */
+    private final CompletableFuture<Void> mapLoaded;
+    /**
+     * Counts the levels of detail generated so far. Tiles drawn before the latest level are dropped on the next paint.
+     */
+    private volatile int mapVersion = 0;
+    /**
+     * The mapVersion the cached tiles were drawn with. Only used while painting.
+     */
+    private int tilesMapVersion = 0;
+    /**
+     * The part of the globe on screen as of the last paint
+     */
+    private volatile GeoBounds visibleGeoBounds = GeoBounds.WORLD;
+    private final SpatialGrid.Results tileShapes = new SpatialGrid.Results();
+    private final SpatialGrid.Results visiblePlanes = new SpatialGrid.Results();
+    private final MotionModel planeMotion = new MotionModel();
+    private final LabelCache callsignLabels = new LabelCache(PLANE_INFO_FONT, Color.RED, LABEL_BUDGET_BYTES);
+    private final LabelLayout callsignLayout = new LabelLayout();
+    /**
+     * Callsigns drawn in the last frame, the rest having been decluttered
+     */
+    private int labelsDrawn = 0;
+    private final MapTileCache mapTiles = new MapTileCache(MAP_TILE_BUDGET_BYTES, this::renderMapTile);
     public Image mapImage;
     public List<Point> projectionPoints = new ArrayList<>();
     public List<TestPoint> testPointList = new ArrayList<>();
     
-    public final Object planeLock = new Object();
-    public List<Point> planePositions = new ArrayList<>();
-    public List<FR24Aircraft> planeInfo = new ArrayList<>();
-    public long planeLastUpdate = System.currentTimeMillis();
+    public final PlaneBuffer planes = new PlaneBuffer();
+    private volatile FR24TrackerThread tracker = null;
+    /**
+     * Where fetched flights are recorded, or null if they aren't
+     */
+    private TrackStore history = null;
+    private volatile TrackReplayer replayer = null;
+    /**
+     * The time aircraft are dead reckoned to, which is the replay time when replaying
+     */
+    private volatile LongSupplier clock = System::currentTimeMillis;
+    /**
+     * Renders a frame whenever something on screen changes, and continuously while tracked aircraft are moving
+     */
+    public final FrameScheduler frames = new FrameScheduler(Integer.getInteger("MAX_FPS", DEFAULT_MAX_FPS), this::renderFrame);
+    /**
+     * The window whose buffer strategy frames are drawn to, or null to paint through Swing
+     */
+    private Window activeRenderingWindow = null;
     
     public GlobePanel() {
         super();
@@ -101,16 +207,15 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         // Reuse default font but set size to 10.pt
         setFont(getFont().deriveFont(10.f));
 
-        Scanner scannerWorldMap = new Scanner(GlobePanel.class.getResourceAsStream("/World.txt"));
-        mapShapes = MapShapeData.parseWorldMapFile(scannerWorldMap);
-        scannerWorldMap.close();
-
-        mapShapeGenerator = new MapShapeGenerator(mapShapes);
-        new Thread(mapShapeGenerator::generateNewPoints, "Generate Shapes").start();
+        mapLoaded = CompletableFuture.runAsync(this::loadMap, runnable -> new Thread(runnable, "Load Map").start());
+        mapLoaded.exceptionally(e -> {
+            System.err.println("Failed to load world map!");
+            e.printStackTrace();
+            return null;
+        });
 
         projector = new ProjectionConverter(20450, 10350, 0, 0);
 
-        new Thread(() -> FR24TrackerThread.trackAircraft(this), "Track Aircraft").start();
         for (double lat = -90; lat <= 90; lat += 10) {
             for (double lng = -180; lng <= 180; lng += 20) {
                 projectionPoints.add(projector.projectToScreen(lat, lng));
@@ -128,24 +233,277 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         }
     }
 
-    private void paintDebug(Graphics g) {
+    /**
+     * Loads every map shape and makes them visible to paint once their coarsest outlines are ready, then redraws the
+     * map as each finer level of detail is generated.
+     */
+    private void loadMap() {
+        long startTime = System.nanoTime();
+        List<MapShapeData> shapes = loadWorldMap();
+        long loadedTime = System.nanoTime();
+        new MapShapeGenerator(shapes).generateNewPoints(() -> {
+            if (mapShapeIndex == null) {
+                mapShapes = shapes;
+                mapShapeIndex = buildMapShapeIndex(shapes);
+                System.out.printf("Coarse map shapes ready in %dms%n", (System.nanoTime() - startTime) / 1_000_000);
+            }
+            // Only this thread writes it
+            mapVersion = mapVersion + 1;
+            frames.requestFrame();
+        });
+        long generatedTime = System.nanoTime();
+
+        System.out.printf("Loaded %d map shapes in %dms (load %dms, generate %dms) on %d cores%n",
+            shapes.size(), (generatedTime - startTime) / 1_000_000, (loadedTime - startTime) / 1_000_000,
+            (generatedTime - loadedTime) / 1_000_000, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads the binary world map made by the build, or parses the text map if it hasn't been made.
+     */
+    private static List<MapShapeData> loadWorldMap() {
+        try {
+            List<MapShapeData> shapes = BinaryWorldMap.loadResource("/World.fmap");
+            if (shapes != null) {
+                return shapes;
+            }
+            System.err.println("No binary world map, parsing the text map instead");
+        } catch (IOException e) {
+            System.err.println("Failed to load binary world map, parsing the text map instead");
+            e.printStackTrace();
+        }
+
+        Scanner scannerWorldMap = new Scanner(GlobePanel.class.getResourceAsStream("/World.txt"));
+        List<MapShapeData> shapes = MapShapeData.parseWorldMapFile(scannerWorldMap);
+        scannerWorldMap.close();
+        return shapes;
+    }
+
+    /**
+     * Starts fetching flights from the tracker server in the background. If the TRACK_HISTORY_DIR system property is
+     * set, every flight fetched is also recorded there. TRACKER_LAT_SHARDS and TRACKER_LNG_SHARDS split each query into
+     * shards that are fetched at the same time.
+     */
+    public void startTracking() {
+        tracker = new FR24TrackerThread(System.getProperty("FR24_SERVER_URL"), FR24TrackerResults.sharedClient(),
+            projector, planes, this::getVisibleGeoBounds, frames::requestFrame);
+        tracker.setShards(Integer.getInteger("TRACKER_LAT_SHARDS", 1), Integer.getInteger("TRACKER_LNG_SHARDS", 1));
+        String historyDir = System.getProperty("TRACK_HISTORY_DIR");
+        if (historyDir != null) {
+            try {
+                history = new TrackStore(Path.of(historyDir));
+                tracker.setHistory(history);
+                System.out.printf("Recording flight history to %s (%d records already there)\n", historyDir, history.size());
+            } catch (IOException e) {
+                System.err.println("Failed to open flight history, not recording!");
+                e.printStackTrace();
+            }
+        }
+        tracker.start();
+        // Dead reckoned aircraft move every frame, but nothing moves without aircraft
+        frames.setAnimating(() -> planes.peek().size() > 0);
+    }
+
+    /**
+     * Plays a recording of flights instead of fetching them live, from its first record.
+     * @param speed How many times faster than real time to play, from TrackReplayer.MIN_SPEED to MAX_SPEED
+     */
+    public void startReplay(TrackStore recording, double speed) {
+        replayer = new TrackReplayer(recording, projector, planes, frames::requestFrame);
+        replayer.setSpeed(speed);
+        clock = replayer::getReplayTime;
+        replayer.start();
+        frames.setAnimating(() -> planes.peek().size() > 0);
+    }
+
+    /**
+     * Stops playing a recording. The recording isn't closed.
+     */
+    public void stopReplay() {
+        frames.setAnimating(() -> false);
+        if (replayer != null) {
+            replayer.close();
+            replayer = null;
+            clock = System::currentTimeMillis;
+        }
+    }
+
+    /**
+     * Stops fetching flights. The last flights fetched stay on the map.
+     */
+    public void stopTracking() {
+        frames.setAnimating(() -> false);
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+        if (history != null) {
+            history.close();
+            history = null;
+        }
+    }
+
+    /**
+     * Creates an empty grid covering the whole world.
+     */
+    static SpatialGrid createWorldGrid() {
+        return new SpatialGrid(WORLD_MIN_X, WORLD_MIN_Y, WORLD_MAX_X, WORLD_MAX_Y, WORLD_GRID_COLUMNS, WORLD_GRID_ROWS);
+    }
+
+    private static SpatialGrid buildMapShapeIndex(List<MapShapeData> shapes) {
+        float[] minX = new float[shapes.size()], minY = new float[shapes.size()];
+        float[] maxX = new float[shapes.size()], maxY = new float[shapes.size()];
+        for (int i = 0; i < shapes.size(); i++) {
+            Rectangle bounds = shapes.get(i).getBounds();
+            minX[i] = bounds.x;
+            minY[i] = bounds.y;
+            maxX[i] = bounds.x + bounds.width;
+            maxY[i] = bounds.y + bounds.height;
+        }
+        SpatialGrid index = createWorldGrid();
+        index.build(minX, minY, maxX, maxY, shapes.size());
+        return index;
+    }
+
+    /**
+     * Moves the camera. Used to render specific views offscreen.
+     */
+    public void setCamera(int worldX, int worldY, float zoom) {
+        currentWorldX = worldX;
+        currentWorldY = worldY;
+        zoomScalar = Math.max(MIN_CAMERA_ZOOM, Math.min(MAX_CAMERA_ZOOM, zoom));
+    }
+
+    /**
+     * @return Whether every map shape has at least its coarsest outline, so the map can be drawn
+     */
+    boolean isMapReady() {
+        return mapShapeIndex != null;
+    }
+
+    /**
+     * Completes once every map shape has been loaded and every level of detail generated
+     */
+    public CompletableFuture<Void> getMapLoaded() {
+        return mapLoaded;
+    }
+
+    /**
+     * The part of the globe that was on screen when the panel was last painted. Safe to call from any thread.
+     */
+    public GeoBounds getVisibleGeoBounds() {
+        return visibleGeoBounds;
+    }
+
+    /**
+     * Draws frames straight to a buffer strategy on the window instead of going through Swing's repaint queue. The
+     * window ignores repaints from the system, so every frame comes from the frame scheduler.
+     */
+    public void useActiveRendering(Window window) {
+        activeRenderingWindow = window;
+        window.setIgnoreRepaint(true);
+        setIgnoreRepaint(true);
+    }
+
+    /**
+     * Renders one frame. Called on the event dispatch thread by the frame scheduler.
+     */
+    private void renderFrame() {
+        if (!isShowing()) {
+            return;
+        }
+        BufferStrategy strategy = getBufferStrategy(activeRenderingWindow);
+        if (strategy == null) {
+            paintImmediately(0, 0, getWidth(), getHeight());
+            return;
+        }
+
+        Rectangle area = SwingUtilities.convertRectangle(this, new Rectangle(0, 0, getWidth(), getHeight()), activeRenderingWindow);
+        do {
+            do {
+                Graphics g = strategy.getDrawGraphics();
+                try {
+                    g.translate(area.x, area.y);
+                    g.clipRect(0, 0, area.width, area.height);
+                    paintComponent(g);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+    }
+
+    /**
+     * @return The window's buffer strategy, creating it if needed, or null if frames should be painted through Swing
+     */
+    private static BufferStrategy getBufferStrategy(Window window) {
+        if (window == null || !window.isDisplayable()) {
+            return null;
+        }
+        if (window.getBufferStrategy() == null) {
+            try {
+                window.createBufferStrategy(2);
+            } catch (IllegalStateException e) {
+                return null;
+            }
+        }
+        return window.getBufferStrategy();
+    }
+
+    private void paintDebug(Graphics g, PlaneSnapshot planeSnapshot, AffineTransform cameraTransform) {
         g.setFont(DEBUG_FONT);
         g.setColor(Color.WHITE);
         g.drawString("World X: " + currentWorldX, 5, 15);
         g.drawString("World Y: " + currentWorldY, 5, 30);
         g.drawString(String.format("Zoom Scalar: %.2f (Reset: press =)", zoomScalar), 5, 45);
-        synchronized (planeLock) {
-            g.drawString("Tracked flights: " + planeInfo.size(), 5, 60);
-            g.drawString(String.format("Flights last updated: %dms ago", (System.currentTimeMillis() - planeLastUpdate)), 5, 75);
-        }
+        g.drawString("Tracked flights: " + planeSnapshot.size(), 5, 60);
+        g.drawString(String.format("Flights last updated: %dms ago", (System.currentTimeMillis() - planeSnapshot.publishTime())), 5, 75);
         g.drawString(String.format("Showing map overlay: %b (Toggle: press \\)", drawMapInfo), 5, 90);
+        g.drawString(isMapReady() ? "Map detail level: " + MapShapeData.detailLevelForZoom(zoomScalar) : "Loading map...", 5, 105);
+        g.drawString(String.format("Map tiles cached: %d (%d MiB, %d rendered), labels cached: %d (%d KiB, %d drawn)",
+            mapTiles.size(), mapTiles.getMemoryUsed() / (1024 * 1024), mapTiles.getTilesRendered(),
+            callsignLabels.size(), callsignLabels.getMemoryUsed() / 1024, labelsDrawn), 5, 120);
+        g.drawString("Visible: " + visibleGeoBounds, 5, 135);
+        g.drawString(String.format("Frames: %s (cap %d fps, %s)", frames.getStats(), frames.getMaxFramesPerSecond(),
+            (activeRenderingWindow != null) ? "active" : "passive"), 5, 150);
+        TrackReplayer currentReplayer = replayer;
+        if (currentReplayer != null) {
+            g.drawString(String.format("Replaying %s at %.0fx, recorded %s to %s (Speed: press [ or ], seek: press , or .)",
+                Instant.ofEpochMilli(currentReplayer.getReplayTime()), currentReplayer.getSpeed(),
+                Instant.ofEpochMilli(currentReplayer.getStartTime()), Instant.ofEpochMilli(currentReplayer.getEndTime())), 5, 165);
+        }
+        FR24TrackerThread currentTracker = tracker;
+        if (currentTracker != null && currentTracker.getConsecutiveFailures() > 0) {
+            g.setColor(Color.ORANGE);
+            g.drawString(String.format("Tracker failing (%d in a row), showing last flights fetched", currentTracker.getConsecutiveFailures()), 5, 165);
+            g.setColor(Color.WHITE);
+        }
+        if (showMetrics) {
+            paintMetrics(g, 185);
+        } else {
+            g.drawString("Metrics hidden (Toggle: press M)", 5, 185);
+        }
         if (showMouseCoords) {
             g.setColor(Color.GREEN);
-            g.drawString(String.format("(%d, %d)", mouseX, mouseY), mouseX, mouseY);
+            g.drawString(String.format("(%d, %d) %s", mouseX, mouseY, getGeoPosition(cameraTransform, mouseX, mouseY)), mouseX, mouseY);
         }
     }
 
-    private AffineTransform getCameraTransform(AffineTransform originalTransform) {
+    private void paintMetrics(Graphics g, int y) {
+        g.drawString(String.format("Polls: %d (%d failed), %d KiB received, %d aircraft, %d frames dropped",
+            Metrics.POLLS.get(), Metrics.FAILED_POLLS.get(), Metrics.BYTES_RECEIVED.get() / 1024,
+            Metrics.AIRCRAFT.get(), Metrics.DROPPED_FRAMES.get()), 5, y);
+        for (LatencyHistogram histogram : Metrics.HISTOGRAMS) {
+            y += 15;
+            g.drawString(histogram.toString(), 5, y);
+        }
+    }
+
+    /**
+     * @return Transform from world space to panel pixels
+     */
+    private AffineTransform getCameraTransform() {
         // FIXME change camera zoom to middle of screen
         // Move to the center of the image
         AffineTransform cameraTransform = AffineTransform.getTranslateInstance(getWidth() / 2, getHeight() / 2);
@@ -156,8 +514,38 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         return cameraTransform;
     }
 
+    /**
+     * @return Where a point on the panel is on the globe
+     */
+    private LatLng getGeoPosition(AffineTransform cameraTransform, int panelX, int panelY) {
+        try {
+            Point2D world = cameraTransform.inverseTransform(new Point2D.Double(panelX, panelY), null);
+            return projector.screenToGeo(world.getX(), world.getY());
+        } catch (NoninvertibleTransformException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return The part of world space visible on screen, padded by VIEW_MARGIN
+     */
+    private Rectangle2D getVisibleWorldBounds(AffineTransform cameraTransform) {
+        try {
+            Rectangle2D visible = cameraTransform.createInverse()
+                .createTransformedShape(new Rectangle2D.Float(0, 0, getWidth(), getHeight()))
+                .getBounds2D();
+            visible.setRect(visible.getX() - VIEW_MARGIN, visible.getY() - VIEW_MARGIN,
+                visible.getWidth() + VIEW_MARGIN * 2, visible.getHeight() + VIEW_MARGIN * 2);
+            return visible;
+        } catch (NoninvertibleTransformException e) {
+            // Only possible with a zoom of 0, which is clamped away
+            return new Rectangle2D.Float(WORLD_MIN_X, WORLD_MIN_Y, WORLD_MAX_X - WORLD_MIN_X, WORLD_MAX_Y - WORLD_MIN_Y);
+        }
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
 
         if (!(g instanceof Graphics2D g2d)) {
@@ -169,13 +557,22 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
 
         // Prepare transform for world space
         AffineTransform originalTransform = g2d.getTransform();
-        g2d.setTransform(getCameraTransform(originalTransform));
+        AffineTransform cameraTransform = getCameraTransform();
+        // Keep the panel's own transform underneath, such as the window offset when rendering actively
+        AffineTransform worldTransform = new AffineTransform(originalTransform);
+        worldTransform.concatenate(cameraTransform);
+        g2d.setTransform(worldTransform);
+        Rectangle2D visible = getVisibleWorldBounds(cameraTransform);
+        float visibleMinX = (float) visible.getMinX(), visibleMinY = (float) visible.getMinY();
+        float visibleMaxX = (float) visible.getMaxX(), visibleMaxY = (float) visible.getMaxY();
+        visibleGeoBounds = projector.screenToGeoBounds(visibleMinX + VIEW_MARGIN, visibleMinY + VIEW_MARGIN,
+            visibleMaxX - VIEW_MARGIN, visibleMaxY - VIEW_MARGIN);
 
         // Info for debugging map alignment
         if (drawMapInfo && mapImage != null) {
             g2d.drawImage(mapImage, -355, -159, 20430, 10345, null);
             g2d.setColor(Color.BLUE);
-            g2d.setStroke(new BasicStroke(5.f));
+            g2d.setStroke(MAP_STROKE);
             for (Point projPoint : projectionPoints) {
                 g2d.fillRect((int)projPoint.x() - 10, (int)projPoint.y() - 10, 20, 20);
             }
@@ -183,32 +580,93 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         }
 
         // Draw actual map
-        g2d.setColor(Color.PINK);
-        g2d.setStroke(new BasicStroke(5.f));
-
-        for (MapShapeData shape : mapShapes) {
-            Polygon polygon = shape.getPolygon();
-            synchronized (polygon) {
-                g2d.drawPolygon(polygon);
+        if (isMapReady()) {
+            int version = mapVersion;
+            if (version != tilesMapVersion) {
+                mapTiles.clear();
+                tilesMapVersion = version;
             }
+            // Tiles already include the stroke, so they don't need the margin
+            mapTiles.draw(g2d, visibleMinX + VIEW_MARGIN, visibleMinY + VIEW_MARGIN,
+                visibleMaxX - VIEW_MARGIN, visibleMaxY - VIEW_MARGIN, zoomScalar);
         }
 
-        // Draw planes
+        // Draw planes on top, so they can change without the map being drawn again
         g2d.setColor(Color.RED);
-        g2d.setStroke(new BasicStroke(2.f));
-        synchronized (planeLock) {
-            for (int i = 0; i < planePositions.size(); i++) {
-                Point point = planePositions.get(i);
-                g2d.fillRect((int)point.x() - 2, (int)point.y() - 2, 4, 4);
-                String callsign = planeInfo.get(i).callsign().toUpperCase();
-                int callsignWidth = g2d.getFontMetrics().stringWidth(callsign);
-                g2d.drawString(callsign, (int)point.x() - callsignWidth / 2, (int)point.y() + 8);
+        g2d.setStroke(PLANE_STROKE);
+        // Everything drawn this frame comes from the same generation
+        PlaneSnapshot planeSnapshot = planes.acquire();
+        try {
+            CallsignTable callsigns = planes.getCallsigns();
+            PlaneColumns planeColumns = planeSnapshot.columns();
+            SpatialGrid planeIndex = planeColumns.getIndex();
+            // Culled by where aircraft were reported, which VIEW_MARGIN covers however far they've been dead reckoned
+            int planeCount = (planeIndex == null) ? 0
+                : planeIndex.query(visibleMinX, visibleMinY, visibleMaxX, visibleMaxY, visiblePlanes);
+            planeMotion.extrapolate(planeColumns, visiblePlanes.items, planeCount, clock.getAsLong(), projector);
+            for (int p = 0; p < planeCount; p++) {
+                g2d.fillRect((int) planeMotion.x[p] - 2, (int) planeMotion.y[p] - 2, 4, 4);
+            }
+
+            // Reset transform for UI
+            g2d.setTransform(originalTransform);
+            labelsDrawn = 0;
+            if (zoomScalar >= MIN_LABEL_ZOOM) {
+                paintCallsigns(g2d, callsigns, planeColumns, planeCount, cameraTransform);
             }
+            paintDebug(g2d, planeSnapshot, cameraTransform);
+        } finally {
+            planes.release(planeSnapshot);
+            Metrics.PAINT.recordSince(paintStart);
         }
+    }
 
-        // Reset transform for UI
-        g2d.setTransform(originalTransform);
-        paintDebug(g2d);
+    /**
+     * Draws a callsign under each visible aircraft from the label cache, skipping any that would be off screen or
+     * overlap one already drawn. Labels are drawn in panel pixels, so they're blitted without scaling.
+     * @param g2d Graphics with the panel's own transform, not world space
+     * @param cameraTransform Transform from world space to the panel, which only scales and translates
+     */
+    private void paintCallsigns(Graphics2D g2d, CallsignTable callsigns, PlaneColumns planeColumns, int planeCount,
+            AffineTransform cameraTransform) {
+        double scale = cameraTransform.getScaleX();
+        double translateX = cameraTransform.getTranslateX(), translateY = cameraTransform.getTranslateY();
+        float labelHeight = callsignLabels.getHeight(zoomScalar), labelAscent = callsignLabels.getAscent(zoomScalar);
+        callsignLayout.begin(0, 0, getWidth(), getHeight(), labelHeight);
+        for (int p = 0; p < planeCount; p++) {
+            int i = visiblePlanes.items[p];
+            // Same place the callsign was drawn in world space, 8 units below the aircraft
+            float x = (float) (scale * (int) planeMotion.x[p] + translateX);
+            float baselineY = (float) (scale * ((int) planeMotion.y[p] + 8) + translateY);
+            float halfWidth = callsignLabels.getWidth(callsigns, planeColumns.callsignId[i], zoomScalar) / 2;
+            float top = baselineY - labelAscent;
+            if (callsignLayout.tryPlace(x - halfWidth, top, x + halfWidth, top + labelHeight)) {
+                callsignLabels.draw(g2d, callsignLabels.get(callsigns, planeColumns.callsignId[i], zoomScalar), x, baselineY);
+                labelsDrawn++;
+            }
+        }
+    }
+
+    /**
+     * Rasterizes the map outlines inside one tile of the tile cache.
+     */
+    private void renderMapTile(Graphics2D g2d, float worldMinX, float worldMinY, float worldMaxX, float worldMaxY, float zoom) {
+        g2d.setColor(Color.PINK);
+        g2d.setStroke(MAP_STROKE);
+        float strokeMargin = MAP_STROKE.getLineWidth();
+        int detailLevel = MapShapeData.detailLevelForZoom(zoom);
+        int shapeCount = mapShapeIndex.query(worldMinX - strokeMargin, worldMinY - strokeMargin,
+            worldMaxX + strokeMargin, worldMaxY + strokeMargin, tileShapes);
+        for (int i = 0; i < shapeCount; i++) {
+            drawShape(g2d, mapShapes.get(tileShapes.items[i]), detailLevel);
+        }
+    }
+
+    private static void drawShape(Graphics2D g2d, MapShapeData shape, int detailLevel) {
+        Path2D.Float outline = shape.getOutline(detailLevel);
+        if (outline != null) {
+            g2d.draw(outline);
+        }
     }
 
     @Override
@@ -266,7 +724,7 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
             currentWorldY = mouseDownWorldY - yDiff;
         }
 
-        SwingUtilities.invokeLater(this::repaint);
+        frames.requestFrame();
     }
 
     @Override
@@ -274,7 +732,7 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         mouseX = e.getX();
         mouseY = e.getY();
 
-        SwingUtilities.invokeLater(this::repaint);
+        frames.requestFrame();
     }
 
     public void mouseWheelMoved(MouseWheelEvent e) {
@@ -288,7 +746,7 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         zoomScalar = Math.max(MIN_CAMERA_ZOOM, zoomScalar);
         zoomScalar = Math.min(MAX_CAMERA_ZOOM, zoomScalar);
 
-        SwingUtilities.invokeLater(this::repaint);
+        frames.requestFrame();
     }
 
     @Override
@@ -299,35 +757,79 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
 	public void keyPressed(KeyEvent e) {
         if (e.getKeyCode() == KeyEvent.VK_CONTROL) {
             showMouseCoords = true;
-            SwingUtilities.invokeLater(this::repaint);
-        } else if (e.getKeyCode() == KeyEvent.VK_ENTER) {
-            for (MapShapeData mapShape : mapShapes) {
-                mapShape.requestNewPoint();
-            }
-            System.out.println("Draw new point");
-            SwingUtilities.invokeLater(this::repaint);
+            frames.requestFrame();
         } else if (e.getKeyChar() == KeyEvent.VK_EQUALS) {
             zoomScalar = 1;
-            SwingUtilities.invokeLater(this::repaint);
+            frames.requestFrame();
         } else if (e.getKeyChar() == KeyEvent.VK_BACK_SLASH) {
             drawMapInfo = !drawMapInfo;
-            SwingUtilities.invokeLater(this::repaint);
+            frames.requestFrame();
+        } else if (e.getKeyCode() == KeyEvent.VK_M) {
+            showMetrics = !showMetrics;
+            frames.requestFrame();
+        } else if (replayer != null) {
+            replayKeyPressed(e, replayer);
         }
 	}
 
+    private void replayKeyPressed(KeyEvent e, TrackReplayer currentReplayer) {
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_OPEN_BRACKET -> currentReplayer.setSpeed(currentReplayer.getSpeed() / 2);
+            case KeyEvent.VK_CLOSE_BRACKET -> currentReplayer.setSpeed(currentReplayer.getSpeed() * 2);
+            case KeyEvent.VK_COMMA -> currentReplayer.seek(currentReplayer.getReplayTime() - REPLAY_SEEK_MS);
+            case KeyEvent.VK_PERIOD -> currentReplayer.seek(currentReplayer.getReplayTime() + REPLAY_SEEK_MS);
+            default -> { }
+        }
+        frames.requestFrame();
+    }
+
 	@Override
 	public void keyReleased(KeyEvent e) {
         if (e.getKeyCode() == KeyEvent.VK_CONTROL) {
             showMouseCoords = false;
-            SwingUtilities.invokeLater(this::repaint);
+            frames.requestFrame();
         }
 	}
 
     /**
-     * Adds a GlobePanel to a JFrame and packs it. Also registers input listeners.
+     * Adds a GlobePanel to a JFrame and packs it. Also registers input listeners. Call startTracking or startReplay
+     * to give it flights to show.
      */
-    public static void addToFrame(JFrame frame) {
+    public static GlobePanel addToFrame(JFrame frame) {
         GlobePanel panelGlobe = new GlobePanel();
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                panelGlobe.stopTracking();
+                panelGlobe.stopReplay();
+                panelGlobe.frames.close();
+            }
+
+            @Override
+            public void windowDeiconified(WindowEvent e) {
+                panelGlobe.frames.requestFrame();
+            }
+
+            @Override
+            public void windowActivated(WindowEvent e) {
+                panelGlobe.frames.requestFrame();
+            }
+        });
+        panelGlobe.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                panelGlobe.frames.requestFrame();
+            }
+
+            @Override
+            public void componentShown(ComponentEvent e) {
+                panelGlobe.frames.requestFrame();
+            }
+        });
+        if (!Boolean.getBoolean("PASSIVE_RENDERING")) {
+            panelGlobe.useActiveRendering(frame);
+        }
+        panelGlobe.frames.start();
         frame.add(panelGlobe);
         frame.addMouseListener(panelGlobe);
         frame.addMouseMotionListener(panelGlobe);
@@ -338,6 +840,7 @@ public class GlobePanel extends JPanel implements MouseMotionListener, MouseList
         frame.addMouseMotionListener(panelGlobe);
         frame.addMouseWheelListener(panelGlobe);
         frame.addKeyListener(panelGlobe);
+        return panelGlobe;
     }
 
 }
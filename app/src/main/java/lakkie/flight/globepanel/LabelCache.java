@@ -0,0 +1,181 @@
+package lakkie.flight.globepanel;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps callsign labels pre-rendered as small images, so painting thousands of aircraft blits images instead of laying
+ * out text every frame. Labels are rendered at the exact zoom they're drawn at and drawn without a transform, which
+ * keeps every blit a plain copy. Zooming renders labels again, but only for the frames while the zoom is changing.
+ *
+ * Every label in a cache uses the same font and colour. Labels are keyed by {@link CallsignTable} ID and zoom, and the
+ * least recently drawn are evicted once the cache goes over its memory budget. Widths are measured once per callsign
+ * and scaled, so labels can be laid out without rendering the ones that won't be drawn. Not thread safe, so only use
+ * it from the paint thread.
+ */
+public class LabelCache {
+
+    private final Font font;
+    private final Color color;
+    private final long budgetBytes;
+    /**
+     * Access ordered, so iteration starts at the least recently drawn label
+     */
+    private final LinkedHashMap<Long, Label> labels = new LinkedHashMap<>(256, 0.75f, true);
+    /**
+     * Only used for measuring text
+     */
+    private final Graphics2D measureGraphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    /**
+     * Width of each callsign in the unscaled font, by callsign ID. Zero until measured.
+     */
+    private float[] widths = new float[1024];
+    private final float ascent, height;
+    private long memoryUsed = 0;
+    private long labelsRendered = 0;
+
+    public LabelCache(Font font, Color color, long budgetBytes) {
+        this.font = font;
+        this.color = color;
+        this.budgetBytes = budgetBytes;
+        FontMetrics metrics = measureGraphics.getFontMetrics(font);
+        this.ascent = metrics.getAscent();
+        this.height = metrics.getAscent() + metrics.getDescent();
+    }
+
+    /**
+     * How wide a callsign's label is at a zoom, in pixels. Only measures the text the first time.
+     * @param callsigns The table callsignId came from
+     */
+    public float getWidth(CallsignTable callsigns, int callsignId, float zoom) {
+        if (callsignId >= widths.length) {
+            widths = Arrays.copyOf(widths, Math.max(callsignId + 1, widths.length * 2));
+        }
+        if (widths[callsignId] == 0) {
+            // Never zero again, even for an empty callsign
+            widths[callsignId] = Math.max(Float.MIN_VALUE, measureGraphics.getFontMetrics(font).stringWidth(label(callsigns, callsignId)));
+        }
+        return widths[callsignId] * zoom;
+    }
+
+    /**
+     * Height of every label at a zoom, in pixels
+     */
+    public float getHeight(float zoom) {
+        return height * zoom;
+    }
+
+    /**
+     * Distance from the top of every label to its baseline at a zoom, in pixels
+     */
+    public float getAscent(float zoom) {
+        return ascent * zoom;
+    }
+
+    /**
+     * Finds the label for a callsign, rendering it if it isn't cached at this zoom yet.
+     * @param callsigns The table callsignId came from
+     */
+    public Label get(CallsignTable callsigns, int callsignId, float zoom) {
+        long key = ((long) Float.floatToIntBits(zoom) << 32) | (callsignId & 0xFFFFFFFFL);
+        Label label = labels.get(key);
+        if (label == null) {
+            label = render(label(callsigns, callsignId), zoom);
+            labels.put(key, label);
+            memoryUsed += label.bytes();
+            evictOverBudget();
+        }
+        return label;
+    }
+
+    /**
+     * Draws a label centred horizontally on x with its baseline at y.
+     * @param g2d Graphics in pixels, not world space
+     */
+    public void draw(Graphics2D g2d, Label label, float x, float baselineY) {
+        g2d.drawImage(label.image(), Math.round(x - label.image().getWidth() / 2f), Math.round(baselineY - label.ascent()), null);
+    }
+
+    /**
+     * Drops every label.
+     */
+    public void clear() {
+        for (Label label : labels.values()) {
+            label.image().flush();
+        }
+        labels.clear();
+        memoryUsed = 0;
+    }
+
+    /**
+     * The number of labels currently cached
+     */
+    public int size() {
+        return labels.size();
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    /**
+     * The number of labels rendered since the cache was created, including ones that were later evicted
+     */
+    public long getLabelsRendered() {
+        return labelsRendered;
+    }
+
+    private static String label(CallsignTable callsigns, int callsignId) {
+        return callsigns.name(callsignId).toUpperCase();
+    }
+
+    private Label render(String text, float zoom) {
+        Font scaledFont = font.deriveFont(font.getSize2D() * zoom);
+        FontMetrics metrics = measureGraphics.getFontMetrics(scaledFont);
+        int width = Math.max(1, metrics.stringWidth(text));
+        int height = Math.max(1, metrics.getAscent() + metrics.getDescent());
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = image.createGraphics();
+        try {
+            g2d.setFont(scaledFont);
+            g2d.setColor(color);
+            g2d.drawString(text, 0, metrics.getAscent());
+        } finally {
+            g2d.dispose();
+        }
+        labelsRendered++;
+        return new Label(image, metrics.getAscent());
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, Label>> leastRecent = labels.entrySet().iterator();
+        // Always keep the label just added
+        while (memoryUsed > budgetBytes && labels.size() > 1) {
+            Label evicted = leastRecent.next().getValue();
+            evicted.image().flush();
+            memoryUsed -= evicted.bytes();
+            leastRecent.remove();
+        }
+    }
+
+    /**
+     * A rendered label
+     * @param ascent Pixels from the top of the image to the baseline
+     */
+    public record Label(BufferedImage image, int ascent) {
+
+        long bytes() {
+            return (long) image.getWidth() * image.getHeight() * 4;
+        }
+
+    }
+
+}
@@ -0,0 +1,84 @@
+package lakkie.flight.globepanel;
+
+import java.util.Arrays;
+
+/**
+ * Declutters labels by only placing a label where it doesn't overlap one already placed this frame. The view is
+ * divided into cells about the size of a label's height, and a label takes every cell its box touches, so the check is
+ * conservative but only costs a few array reads.
+ *
+ * The cell arrays are reused between frames. Not thread safe, so only use it from the paint thread.
+ */
+public class LabelLayout {
+
+    /**
+     * Most cells along either side of the view, so zooming far out doesn't allocate a huge grid
+     */
+    private static final int MAX_CELLS_PER_SIDE = 512;
+
+    private float minX, minY, maxX, maxY, cellSize;
+    private int columns, rows;
+    /**
+     * The frame each cell was last taken in, so the grid doesn't need clearing between frames
+     */
+    private int[] takenInFrame = new int[0];
+    private int frame = 0;
+
+    /**
+     * Starts a new frame with every cell free.
+     * @param cellSize Size of a cell in the same units as the view, such as the height of a label
+     */
+    public void begin(float minX, float minY, float maxX, float maxY, float cellSize) {
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.cellSize = Math.max(cellSize, Math.max(maxX - minX, maxY - minY) / MAX_CELLS_PER_SIDE);
+        columns = Math.max(1, (int) Math.ceil((maxX - minX) / this.cellSize));
+        rows = Math.max(1, (int) Math.ceil((maxY - minY) / this.cellSize));
+
+        if (takenInFrame.length < columns * rows) {
+            takenInFrame = new int[columns * rows];
+            frame = 0;
+        }
+        if (++frame == 0) {
+            // Wrapped around, so old marks could look like this frame's
+            Arrays.fill(takenInFrame, 0);
+            frame = 1;
+        }
+    }
+
+    /**
+     * Places a label if its box is inside the view and doesn't overlap a label already placed this frame.
+     * @return Whether the label was placed and should be drawn
+     */
+    public boolean tryPlace(float boxMinX, float boxMinY, float boxMaxX, float boxMaxY) {
+        if (boxMaxX < minX || boxMinX > maxX || boxMaxY < minY || boxMinY > maxY) {
+            return false;
+        }
+        int startColumn = column(boxMinX), endColumn = column(boxMaxX);
+        int startRow = row(boxMinY), endRow = row(boxMaxY);
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                if (takenInFrame[row * columns + column] == frame) {
+                    return false;
+                }
+            }
+        }
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                takenInFrame[row * columns + column] = frame;
+            }
+        }
+        return true;
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) ((x - minX) / cellSize)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) ((y - minY) / cellSize)));
+    }
+
+}
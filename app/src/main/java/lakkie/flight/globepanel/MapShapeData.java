@@ -1,14 +1,26 @@
 package lakkie.flight.globepanel;
 
-import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.geom.Path2D;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Scanner;
 
 public class MapShapeData {
 
     public static final float POLYGON_SCALE = 10.f;
 
+    /**
+     * How far each level of detail may stray from the full outline, in world units. Level 0 is the full outline. The
+     * coarsest is a pixel at the minimum camera zoom.
+     */
+    public static final double[] DETAIL_TOLERANCES = { 0, 1.25, 2.5, 5, 10 };
+    /**
+     * How far an outline may stray from the full outline on screen, in pixels
+     */
+    private static final double DETAIL_PIXEL_TOLERANCE = 1;
+
     /**
      * The offset of all xPoints and yPoints in the shape.
      */
@@ -23,17 +35,15 @@ public class MapShapeData {
     float[] xPoints, yPoints;
 
     /**
-     * The number of points to put into polygon. This should only ever be increased.
+     * Outlines built so far, indexed the same as DETAIL_TOLERANCES, with null for levels that haven't been built. Each
+     * new level replaces the whole array, and neither the array nor its outlines are modified once published, so they
+     * can be drawn without a lock.
      */
-    volatile int targetPointsGenerate = 0;
-
-    int[] polyPointsX;
-    int[] polyPointsY;
-
+    private volatile Path2D.Float[] levelsOfDetail = new Path2D.Float[DETAIL_TOLERANCES.length];
     /**
-     * The final polygon to display. Should never be written to outside of the generateNewPoints function.
+     * Bounding box of the full outline in world units. Null until the points have been generated.
      */
-    Polygon polygon;
+    private volatile Rectangle bounds = null;
     /**
      * Whether all the points in the xPoints and yPoints arrays are relative to each other.
      */
@@ -47,38 +57,70 @@ public class MapShapeData {
      * starting point and excluding the final point that wraps back around to the start.
      */
     private MapShapeData(float offsetX, float offsetY, int numPoints, boolean relativePoints) {
+        this(offsetX, offsetY, new float[numPoints], new float[numPoints], relativePoints);
+    }
+
+    private MapShapeData(float offsetX, float offsetY, float[] xPoints, float[] yPoints, boolean relativePoints) {
+        int numPoints = xPoints.length;
         this.offsetX = offsetX;
         this.offsetY = offsetY;
         this.numPoints = numPoints;
-        this.xPoints = new float[numPoints];
-        this.yPoints = new float[numPoints];
+        this.xPoints = xPoints;
+        this.yPoints = yPoints;
         this.relativePoints = relativePoints;
-        this.polygon = new Polygon(new int[] {}, new int[] {}, 0);
-        if (relativePoints) {
-            this.polyPointsX = new int[numPoints + 1];
-            this.polyPointsY = new int[numPoints + 1];
-        } else {
-            this.polyPointsX = new int[numPoints];
-            this.polyPointsY = new int[numPoints];
-        }
-
-        targetPointsGenerate = numPoints;
     }
 
-    public void requestNewPoint() {
-        if (this.relativePoints) {
-            if (targetPointsGenerate <= xPoints.length) {
-                targetPointsGenerate++;
+    /**
+     * @return The outline at the given level of detail. If that level hasn't been built yet, the nearest level that
+     * has, preferring coarser ones. Null if no level has been built. Must not be modified.
+     */
+    public Path2D.Float getOutline(int detailLevel) {
+        Path2D.Float[] levels = levelsOfDetail;
+        for (int level = detailLevel; level < levels.length; level++) {
+            if (levels[level] != null) {
+                return levels[level];
             }
-        } else {
-            if (targetPointsGenerate < xPoints.length) {
-                targetPointsGenerate++;
+        }
+        for (int level = detailLevel - 1; level >= 0; level--) {
+            if (levels[level] != null) {
+                return levels[level];
             }
         }
+        return null;
+    }
+
+    /**
+     * Publishes the outline for one level of detail. Only the generator building this shape may call it.
+     */
+    void setOutline(int detailLevel, Path2D.Float outline) {
+        Path2D.Float[] levels = levelsOfDetail.clone();
+        levels[detailLevel] = outline;
+        levelsOfDetail = levels;
+    }
+
+    /**
+     * @return The bounding box of the full outline in world units, or null if the points haven't been generated yet
+     */
+    public Rectangle getBounds() {
+        Rectangle shapeBounds = bounds;
+        return (shapeBounds == null) ? null : new Rectangle(shapeBounds);
     }
 
-    public Polygon getPolygon() {
-        return polygon;
+    void setBounds(Rectangle bounds) {
+        this.bounds = bounds;
+    }
+
+    /**
+     * Picks the coarsest level of detail that stays within a pixel of the full outline at this zoom.
+     */
+    public static int detailLevelForZoom(float zoom) {
+        // Slightly generous so float rounding in zoom doesn't skip a level
+        double worldTolerance = DETAIL_PIXEL_TOLERANCE / zoom + 1e-3;
+        int level = 0;
+        while (level + 1 < DETAIL_TOLERANCES.length && DETAIL_TOLERANCES[level + 1] <= worldTolerance) {
+            level++;
+        }
+        return level;
     }
 
     private void setPoint(int idx, float x, float y) {
@@ -86,6 +128,14 @@ public class MapShapeData {
         this.yPoints[idx] = y;
     }
 
+    /**
+     * Creates a shape from points that have already been parsed, such as from a {@link BinaryWorldMap}.
+     * @param xPoints Every point including the first, which is at the offset. Used directly, not copied.
+     */
+    static MapShapeData fromPoints(float offsetX, float offsetY, float[] xPoints, float[] yPoints, boolean relativePoints) {
+        return new MapShapeData(offsetX, offsetY, xPoints, yPoints, relativePoints);
+    }
+
     public static MapShapeData parsePolygon(String shape, boolean relativePoints) {
         List<Float> xPoints = new ArrayList<Float>();
         List<Float> yPoints = new ArrayList<Float>();
@@ -123,28 +173,36 @@ public class MapShapeData {
         return mapShape;
     }
 
+    /**
+     * Parses every shape in a text world map. Lines are read in order, then parsed in parallel since each line is a
+     * separate shape. The shapes are returned in the order they're in the file.
+     */
     public static List<MapShapeData> parseWorldMapFile(Scanner input) {
-        List<MapShapeData> mapShapes = new ArrayList<MapShapeData>();
-
+        List<String> lines = new ArrayList<String>();
         while (input.hasNextLine()) {
-            String shape = input.nextLine();
-            switch (shape.charAt(0)) {
-                case '#':
-                    // Comment, ignore
-                    continue;
-                case 'R':
-                    mapShapes.add(parsePolygon(shape.substring(1), true));
-                    break;
-                case 'A':
-                    mapShapes.add(parsePolygon(shape.substring(1), false));
-                    break;
-                default:
-                    // Skip this line. Absolute or relative points must be specified
-                    continue;
-            }
+            lines.add(input.nextLine());
         }
 
-        return mapShapes;
+        return lines.parallelStream()
+            .filter(line -> !line.isEmpty())
+            .map(MapShapeData::parseWorldMapLine)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+
+    /**
+     * @return The shape on this line, or null if there isn't one
+     */
+    private static MapShapeData parseWorldMapLine(String shape) {
+        switch (shape.charAt(0)) {
+            case 'R':
+                return parsePolygon(shape.substring(1), true);
+            case 'A':
+                return parsePolygon(shape.substring(1), false);
+            default:
+                // Comment, or a line that doesn't say whether its points are absolute or relative
+                return null;
+        }
     }
 
 }
@@ -1,94 +1,94 @@
 package lakkie.flight.globepanel;
 
-import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.util.List;
+import java.util.stream.IntStream;
 
+/**
+ * Builds the outline of every shape at each level of detail. The coarsest level of every shape is built first, so the
+ * map can be drawn almost at once, then the rest follow starting with the full outline. Each outline is built
+ * once and published to its shape whole, so painting never sees one half built.
+ */
 public class MapShapeGenerator {
-    
+
     private final List<MapShapeData> shapes;
 
     public MapShapeGenerator(List<MapShapeData> shapes) {
         this.shapes = shapes;
     }
 
+    /**
+     * Generates every level of every shape. Returns once all of them are done.
+     */
     public void generateNewPoints() {
-        for (MapShapeData shape : shapes) {
-            if (shape.relativePoints) {
-                generateNewPointsRelative(shape);
-            } else {
-                generateNewPointsAbsolute(shape);
-            }
-        }
+        generateNewPoints(() -> { });
     }
 
     /**
-     * Worker thread that will generate new points when targetPointsGenerate is updated.
-     * Will not write to targetPointsGenerate itself.
+     * Generates every level of every shape. Shapes don't depend on each other, so each level is split across the
+     * common fork join pool. Returns once all of them are done.
+     * @param levelBuilt Run on this thread each time a level has been published for every shape, first for the
+     * coarsest level
      */
-    private void generateNewPointsRelative(MapShapeData s) {
-        // polygon.npoints represents how many points we've generated so far
-        if (s.polygon.npoints < s.targetPointsGenerate) {
-            // Generate the first point based off offsetX and offsetY
-            int startX = (int) Math.floor(s.offsetX * MapShapeData.POLYGON_SCALE);
-            int startY = (int) Math.floor(s.offsetY * MapShapeData.POLYGON_SCALE);
-            if (s.polygon.npoints == 0) {
-                s.polyPointsX[0] = startX;
-                s.polyPointsY[0] = startY;
-                synchronized (s.polygon) {
-                    s.polygon = new Polygon(new int[] { startX }, new int[] { startY }, 1);
-                }
-            }
-
-            int currentX = s.polyPointsX[s.polygon.npoints - 1];
-            int currentY = s.polyPointsY[s.polygon.npoints - 1];
-
-            for (int i = s.polygon.npoints; i < s.targetPointsGenerate && i < s.xPoints.length; i++) {
-                currentX += (int) Math.floor(MapShapeData.POLYGON_SCALE * s.xPoints[i]);
-                currentY += (int) Math.floor(MapShapeData.POLYGON_SCALE * s.yPoints[i]);
-                s.polyPointsX[i] = currentX;
-                s.polyPointsY[i] = currentY;
-            }
+    public void generateNewPoints(Runnable levelBuilt) {
+        int coarsest = MapShapeData.DETAIL_TOLERANCES.length - 1;
+        // Every shape's full outline in world units, kept until every level has been simplified from it
+        int[][] xPoints = new int[shapes.size()][], yPoints = new int[shapes.size()][];
 
-            // We also have to generate the final point, which leads back to the start
-            if (s.targetPointsGenerate == s.xPoints.length) {
-                s.polyPointsX[s.numPoints] = startX;
-                s.polyPointsY[s.numPoints] = startY;
-            }
+        IntStream.range(0, shapes.size()).parallel().forEach(i -> {
+            MapShapeData shape = shapes.get(i);
+            xPoints[i] = new int[shape.numPoints];
+            yPoints[i] = new int[shape.numPoints];
+            generatePoints(shape, xPoints[i], yPoints[i]);
+            buildLevel(shape, coarsest, xPoints[i], yPoints[i]);
+        });
+        levelBuilt.run();
 
-            synchronized (s.polygon) {
-                s.polygon = new Polygon(s.polyPointsX, s.polyPointsY, s.targetPointsGenerate);
-            }
+        for (int level = 0; level < coarsest; level++) {
+            int detailLevel = level;
+            IntStream.range(0, shapes.size()).parallel()
+                .forEach(i -> buildLevel(shapes.get(i), detailLevel, xPoints[i], yPoints[i]));
+            levelBuilt.run();
         }
     }
 
-    private void generateNewPointsAbsolute(MapShapeData s) {
-        // polygon.npoints represents how many points we've generated so far
-        if (s.polygon.npoints < s.targetPointsGenerate) {
-            // Generate the first point based off offsetX and offsetY
-            int startX = (int) Math.floor(s.offsetX * MapShapeData.POLYGON_SCALE);
-            int startY = (int) Math.floor(s.offsetY * MapShapeData.POLYGON_SCALE);
-            if (s.polygon.npoints == 0) {
-                s.polyPointsX[0] = startX;
-                s.polyPointsY[0] = startY;
-                synchronized (s.polygon) {
-                    s.polygon = new Polygon(new int[] { startX }, new int[] { startY }, 1);
-                }
-            }
+    private static void buildLevel(MapShapeData shape, int detailLevel, int[] xPoints, int[] yPoints) {
+        shape.setOutline(detailLevel, PolygonSimplifier.simplify(xPoints, yPoints, shape.numPoints,
+            MapShapeData.DETAIL_TOLERANCES[detailLevel]));
+    }
 
-            int currentX = s.polyPointsX[s.polygon.npoints - 1];
-            int currentY = s.polyPointsY[s.polygon.npoints - 1];
+    /**
+     * Scales the shape's points into world units, adding up relative points as it goes, and sets its bounds. The
+     * outline closes back to the first point on its own, so there's no final point.
+     */
+    private static void generatePoints(MapShapeData s, int[] xPoints, int[] yPoints) {
+        if (s.numPoints == 0) {
+            s.setBounds(new Rectangle());
+            return;
+        }
+        // The first point is at the offset
+        int currentX = (int) Math.floor(s.offsetX * MapShapeData.POLYGON_SCALE);
+        int currentY = (int) Math.floor(s.offsetY * MapShapeData.POLYGON_SCALE);
+        xPoints[0] = currentX;
+        yPoints[0] = currentY;
+        int minX = currentX, minY = currentY, maxX = currentX, maxY = currentY;
 
-            for (int i = s.polygon.npoints; i < s.targetPointsGenerate && i < s.xPoints.length; i++) {
+        for (int i = 1; i < s.numPoints; i++) {
+            if (s.relativePoints) {
+                currentX += (int) Math.floor(MapShapeData.POLYGON_SCALE * s.xPoints[i]);
+                currentY += (int) Math.floor(MapShapeData.POLYGON_SCALE * s.yPoints[i]);
+            } else {
                 currentX = (int) Math.floor(MapShapeData.POLYGON_SCALE * s.xPoints[i]);
                 currentY = (int) Math.floor(MapShapeData.POLYGON_SCALE * s.yPoints[i]);
-                s.polyPointsX[i] = currentX;
-                s.polyPointsY[i] = currentY;
-            }
-
-            synchronized (s.polygon) {
-                s.polygon = new Polygon(s.polyPointsX, s.polyPointsY, s.targetPointsGenerate);
             }
+            xPoints[i] = currentX;
+            yPoints[i] = currentY;
+            minX = Math.min(minX, currentX);
+            minY = Math.min(minY, currentY);
+            maxX = Math.max(maxX, currentX);
+            maxY = Math.max(maxY, currentY);
         }
+        s.setBounds(new Rectangle(minX, minY, maxX - minX, maxY - minY));
     }
 
 }
@@ -0,0 +1,149 @@
+package lakkie.flight.globepanel;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the static map rasterized into square image tiles, so a repaint only has to blit the tiles on screen instead
+ * of stroking every outline again. Tiles are rendered at a fixed set of zoom buckets, each a quarter octave apart,
+ * and scaled down slightly to the actual zoom when drawn.
+ *
+ * The least recently drawn tiles are evicted once the cache goes over its memory budget. Not thread safe, so only
+ * use it from the paint thread.
+ */
+public class MapTileCache {
+
+    /**
+     * Width and height of a tile in pixels
+     */
+    public static final int TILE_SIZE = 256;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    private static final int BUCKETS_PER_OCTAVE = 4;
+
+    /**
+     * Draws the part of the world inside a tile. The graphics is already transformed to world space.
+     */
+    @FunctionalInterface
+    public interface TileRenderer {
+        void render(Graphics2D g2d, float worldMinX, float worldMinY, float worldMaxX, float worldMaxY, float zoom);
+    }
+
+    private final TileRenderer renderer;
+    private final long budgetBytes;
+    /**
+     * Access ordered, so iteration starts at the least recently drawn tile
+     */
+    private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long tilesRendered = 0;
+
+    public MapTileCache(long budgetBytes, TileRenderer renderer) {
+        this.budgetBytes = budgetBytes;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Draws every tile overlapping the rectangle of world space, rendering any that aren't cached yet.
+     * @param g2d Graphics already transformed to world space
+     * @param zoom The current camera zoom
+     */
+    public void draw(Graphics2D g2d, float worldMinX, float worldMinY, float worldMaxX, float worldMaxY, float zoom) {
+        int bucket = bucketForZoom(zoom);
+        float bucketZoom = zoomForBucket(bucket);
+        float tileWorldSize = TILE_SIZE / bucketZoom;
+
+        int startColumn = (int) Math.floor(worldMinX / tileWorldSize), endColumn = (int) Math.floor(worldMaxX / tileWorldSize);
+        int startRow = (int) Math.floor(worldMinY / tileWorldSize), endRow = (int) Math.floor(worldMaxY / tileWorldSize);
+
+        // Scaled with the default nearest neighbour interpolation, since bilinear is several times slower to blit
+        AffineTransform tileTransform = new AffineTransform();
+        for (int row = startRow; row <= endRow; row++) {
+            for (int column = startColumn; column <= endColumn; column++) {
+                BufferedImage tile = getTile(bucket, column, row, bucketZoom, tileWorldSize);
+                tileTransform.setToTranslation(column * tileWorldSize, row * tileWorldSize);
+                tileTransform.scale(1 / bucketZoom, 1 / bucketZoom);
+                g2d.drawImage(tile, tileTransform, null);
+            }
+        }
+    }
+
+    /**
+     * Drops every tile, such as after the map has changed.
+     */
+    public void clear() {
+        for (BufferedImage tile : tiles.values()) {
+            tile.flush();
+        }
+        tiles.clear();
+    }
+
+    /**
+     * The number of tiles currently cached
+     */
+    public int size() {
+        return tiles.size();
+    }
+
+    public long getMemoryUsed() {
+        return (long) tiles.size() * TILE_BYTES;
+    }
+
+    /**
+     * The number of tiles rendered since the cache was created, including ones that were later evicted
+     */
+    public long getTilesRendered() {
+        return tilesRendered;
+    }
+
+    /**
+     * Rounds up to the next bucket, so tiles are only ever scaled down and stay sharp.
+     */
+    static int bucketForZoom(float zoom) {
+        return (int) Math.ceil(Math.log(zoom) / Math.log(2) * BUCKETS_PER_OCTAVE - 1e-4);
+    }
+
+    static float zoomForBucket(int bucket) {
+        return (float) Math.pow(2, (double) bucket / BUCKETS_PER_OCTAVE);
+    }
+
+    private BufferedImage getTile(int bucket, int column, int row, float bucketZoom, float tileWorldSize) {
+        long key = tileKey(bucket, column, row);
+        BufferedImage tile = tiles.get(key);
+        if (tile != null) {
+            return tile;
+        }
+
+        tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = tile.createGraphics();
+        try {
+            float worldMinX = column * tileWorldSize, worldMinY = row * tileWorldSize;
+            g2d.scale(bucketZoom, bucketZoom);
+            g2d.translate(-worldMinX, -worldMinY);
+            renderer.render(g2d, worldMinX, worldMinY, worldMinX + tileWorldSize, worldMinY + tileWorldSize, bucketZoom);
+        } finally {
+            g2d.dispose();
+        }
+        tilesRendered++;
+
+        tiles.put(key, tile);
+        evictOverBudget();
+        return tile;
+    }
+
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, BufferedImage>> leastRecent = tiles.entrySet().iterator();
+        // Always keep the tile just added
+        while (getMemoryUsed() > budgetBytes && tiles.size() > 1) {
+            leastRecent.next().getValue().flush();
+            leastRecent.remove();
+        }
+    }
+
+    private static long tileKey(int bucket, int column, int row) {
+        return ((long) (bucket & 0xFF) << 48) | ((long) (column & 0xFFFFFF) << 24) | (row & 0xFFFFFF);
+    }
+
+}
@@ -0,0 +1,80 @@
+package lakkie.flight.globepanel;
+
+/**
+ * Dead reckons aircraft between polls, so they glide across the map instead of jumping every few seconds. Each
+ * aircraft keeps flying along its last reported heading at its last reported ground speed, starting from where and
+ * when it was last reported.
+ *
+ * Predicted positions are written to reusable arrays, so extrapolating every frame doesn't allocate once they're big
+ * enough. Not thread safe, so only use it from the paint thread.
+ */
+public class MotionModel {
+
+    /**
+     * Aircraft stop moving this long after their last report, so one that has stopped being reported doesn't drift
+     * off forever
+     */
+    public static final long MAX_EXTRAPOLATION_MILLIS = 20_000L;
+    private static final double NAUTICAL_MILES_PER_DEGREE = 60;
+    private static final double MILLIS_PER_HOUR = 3_600_000;
+    /**
+     * Keeps longitude rates finite near the poles
+     */
+    private static final double MIN_COS_LAT = 0.01;
+
+    /**
+     * Predicted positions from the last call to extrapolate. The kth aircraft extrapolated is at index k.
+     */
+    public double[] lat = new double[0], lng = new double[0];
+    /**
+     * Predicted positions in world space from the last call to extrapolate
+     */
+    public float[] x = new float[0], y = new float[0];
+
+    /**
+     * Predicts where some aircraft are now and projects them to world space.
+     * @param indices The aircraft to extrapolate. Only the first count are read.
+     */
+    public void extrapolate(PlaneColumns planes, int[] indices, int count, long nowMillis, ProjectionConverter projector) {
+        ensureCapacity(count);
+        for (int k = 0; k < count; k++) {
+            int i = indices[k];
+            long elapsed = Math.max(0, Math.min(MAX_EXTRAPOLATION_MILLIS, nowMillis - planes.positionTime[i]));
+            lat[k] = Math.max(-90, Math.min(90, planes.lat[i] + planes.latRate[i] * elapsed));
+            double predictedLng = planes.lng[i] + planes.lngRate[i] * elapsed;
+            if (predictedLng > 180) {
+                predictedLng -= 360;
+            } else if (predictedLng < -180) {
+                predictedLng += 360;
+            }
+            lng[k] = predictedLng;
+        }
+        projector.projectToScreen(lat, lng, x, y, count);
+    }
+
+    /**
+     * Works out how fast an aircraft's latitude and longitude change, treating the earth as a sphere where a degree of
+     * latitude is 60 nautical miles.
+     * @param heading Degrees clockwise from north
+     * @param speed Ground speed in knots
+     */
+    public static void setVelocity(PlaneColumns planes, int index, double heading, double speed) {
+        double degreesPerMilli = speed / NAUTICAL_MILES_PER_DEGREE / MILLIS_PER_HOUR;
+        double headingRadians = Math.toRadians(heading);
+        double cosLat = Math.max(MIN_COS_LAT, Math.cos(Math.toRadians(planes.lat[index])));
+        planes.latRate[index] = degreesPerMilli * Math.cos(headingRadians);
+        planes.lngRate[index] = degreesPerMilli * Math.sin(headingRadians) / cosLat;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= lat.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, lat.length * 2);
+        lat = new double[newCapacity];
+        lng = new double[newCapacity];
+        x = new float[newCapacity];
+        y = new float[newCapacity];
+    }
+
+}
@@ -0,0 +1,128 @@
+package lakkie.flight.globepanel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands aircraft from the tracker thread to the paint thread without locks. The tracker publishes each generation
+ * as a {@link PlaneSnapshot} through a single atomic reference, and readers pin whichever snapshot is current while
+ * they use it. A reader never waits on a publish, a publish never waits on a reader, and a reader always sees every
+ * column from the same generation.
+ *
+ * Retired snapshots have their columns reused once nobody is reading them. The snapshot from two publishes ago is
+ * normally free by the next publish, and bringing it up to date only needs the indices changed by the last two
+ * publishes to be copied. If a slow reader still holds it, another free buffer is copied in full instead.
+ */
+public class PlaneBuffer {
+
+    private final CallsignTable callsigns = new CallsignTable();
+    private final AtomicReference<PlaneSnapshot> current;
+
+    /**
+     * The snapshot that was current before the current one. Only touched by the publishing thread.
+     */
+    private PlaneSnapshot retired;
+    /**
+     * Older retired snapshots that were still being read when they would have been reused
+     */
+    private final List<PlaneSnapshot> draining = new ArrayList<>();
+
+    /**
+     * The indices changed by the previous publish, which the retired snapshot hasn't seen yet
+     */
+    private int[] previousChanged = new int[256];
+    private int previousChangedCount = 0;
+
+    public PlaneBuffer() {
+        current = new AtomicReference<>(new PlaneSnapshot(new PlaneColumns(), 0, System.currentTimeMillis()));
+        retired = new PlaneSnapshot(new PlaneColumns(), 0, 0);
+    }
+
+    /**
+     * Publishes a copy of source as the next generation. Must only be called by one thread.
+     * @param changed Every index of source that changed since the last publish, including every index past the
+     * previous size. Only the first changedCount are read.
+     */
+    public void publish(PlaneColumns source, int[] changed, int changedCount) {
+        PlaneColumns target;
+        if (retired.readers.get() == 0) {
+            // Two generations behind, so only the last two sets of changes are missing
+            target = retired.columns();
+            target.ensureCapacity(source.size);
+            copyIndices(source, target, previousChanged, previousChangedCount);
+            copyIndices(source, target, changed, changedCount);
+            target.size = source.size;
+        } else {
+            draining.add(retired);
+            target = takeDrainedColumns();
+            target.copyFrom(source);
+        }
+        target.rebuildIndex();
+
+        if (previousChanged.length < changedCount) {
+            previousChanged = new int[changed.length];
+        }
+        System.arraycopy(changed, 0, previousChanged, 0, changedCount);
+        previousChangedCount = changedCount;
+
+        PlaneSnapshot previous = current.get();
+        current.set(new PlaneSnapshot(target, previous.generation() + 1, System.currentTimeMillis()));
+        retired = previous;
+    }
+
+    /**
+     * Pins the current snapshot so its columns can be read. Never blocks. Every acquire must be matched with a call
+     * to {@link #release(PlaneSnapshot)}.
+     */
+    public PlaneSnapshot acquire() {
+        while (true) {
+            PlaneSnapshot snapshot = current.get();
+            snapshot.readers.incrementAndGet();
+            // If a publish slipped in before we were counted, the publisher may already be reusing these columns
+            if (current.get() == snapshot) {
+                return snapshot;
+            }
+            snapshot.readers.decrementAndGet();
+        }
+    }
+
+    public void release(PlaneSnapshot snapshot) {
+        snapshot.readers.decrementAndGet();
+    }
+
+    /**
+     * The current snapshot, for reading its size, generation or publish time. Use {@link #acquire()} to read
+     * its columns.
+     */
+    public PlaneSnapshot peek() {
+        return current.get();
+    }
+
+    public CallsignTable getCallsigns() {
+        return callsigns;
+    }
+
+    private PlaneColumns takeDrainedColumns() {
+        Iterator<PlaneSnapshot> iterator = draining.iterator();
+        while (iterator.hasNext()) {
+            PlaneSnapshot snapshot = iterator.next();
+            if (snapshot.readers.get() == 0) {
+                iterator.remove();
+                return snapshot.columns();
+            }
+        }
+        return new PlaneColumns();
+    }
+
+    private static void copyIndices(PlaneColumns source, PlaneColumns target, int[] indices, int count) {
+        for (int i = 0; i < count; i++) {
+            int index = indices[i];
+            if (index < source.size) {
+                target.copyFrom(source, index);
+            }
+        }
+    }
+
+}
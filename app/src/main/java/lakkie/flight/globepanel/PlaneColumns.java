@@ -0,0 +1,138 @@
+package lakkie.flight.globepanel;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for aircraft. The aircraft at index i is made up of the ith element of every array, so
+ * walking the aircraft in order walks each array sequentially.
+ */
+public class PlaneColumns {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    public int size = 0;
+
+    public double[] lat, lng, altitude;
+    /**
+     * Position of the aircraft in world space, as returned by {@link ProjectionConverter#projectToScreen}
+     */
+    public float[] x, y;
+    /**
+     * IDs from a {@link CallsignTable}
+     */
+    public int[] callsignId;
+    /**
+     * How fast lat and lng change, in degrees per millisecond, as worked out by {@link MotionModel#setVelocity}
+     */
+    public double[] latRate, lngRate;
+    /**
+     * When the aircraft was at lat and lng, in milliseconds since the epoch
+     */
+    public long[] positionTime;
+
+    /**
+     * Grid of x and y, only built when these columns are published
+     */
+    private SpatialGrid index;
+
+    public PlaneColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PlaneColumns(int capacity) {
+        lat = new double[capacity];
+        lng = new double[capacity];
+        altitude = new double[capacity];
+        x = new float[capacity];
+        y = new float[capacity];
+        callsignId = new int[capacity];
+        latRate = new double[capacity];
+        lngRate = new double[capacity];
+        positionTime = new long[capacity];
+    }
+
+    public int capacity() {
+        return lat.length;
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity <= capacity()) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, capacity() * 2);
+        lat = Arrays.copyOf(lat, newCapacity);
+        lng = Arrays.copyOf(lng, newCapacity);
+        altitude = Arrays.copyOf(altitude, newCapacity);
+        x = Arrays.copyOf(x, newCapacity);
+        y = Arrays.copyOf(y, newCapacity);
+        callsignId = Arrays.copyOf(callsignId, newCapacity);
+        latRate = Arrays.copyOf(latRate, newCapacity);
+        lngRate = Arrays.copyOf(lngRate, newCapacity);
+        positionTime = Arrays.copyOf(positionTime, newCapacity);
+    }
+
+    /**
+     * Rebuilds the spatial index from the current positions.
+     */
+    public void rebuildIndex() {
+        if (index == null) {
+            index = GlobePanel.createWorldGrid();
+        }
+        index.buildPoints(x, y, size);
+    }
+
+    /**
+     * @return The index built by the last call to rebuildIndex, or null if it has never been built
+     */
+    public SpatialGrid getIndex() {
+        return index;
+    }
+
+    /**
+     * Copies the aircraft at index from into index to.
+     */
+    public void move(int from, int to) {
+        lat[to] = lat[from];
+        lng[to] = lng[from];
+        altitude[to] = altitude[from];
+        x[to] = x[from];
+        y[to] = y[from];
+        callsignId[to] = callsignId[from];
+        latRate[to] = latRate[from];
+        lngRate[to] = lngRate[from];
+        positionTime[to] = positionTime[from];
+    }
+
+    /**
+     * Copies the aircraft at index in source into the same index here.
+     */
+    public void copyFrom(PlaneColumns source, int index) {
+        lat[index] = source.lat[index];
+        lng[index] = source.lng[index];
+        altitude[index] = source.altitude[index];
+        x[index] = source.x[index];
+        y[index] = source.y[index];
+        callsignId[index] = source.callsignId[index];
+        latRate[index] = source.latRate[index];
+        lngRate[index] = source.lngRate[index];
+        positionTime[index] = source.positionTime[index];
+    }
+
+    /**
+     * Replaces the contents of these columns with a copy of source.
+     */
+    public void copyFrom(PlaneColumns source) {
+        ensureCapacity(source.size);
+        System.arraycopy(source.lat, 0, lat, 0, source.size);
+        System.arraycopy(source.lng, 0, lng, 0, source.size);
+        System.arraycopy(source.altitude, 0, altitude, 0, source.size);
+        System.arraycopy(source.x, 0, x, 0, source.size);
+        System.arraycopy(source.y, 0, y, 0, source.size);
+        System.arraycopy(source.callsignId, 0, callsignId, 0, source.size);
+        System.arraycopy(source.latRate, 0, latRate, 0, source.size);
+        System.arraycopy(source.lngRate, 0, lngRate, 0, source.size);
+        System.arraycopy(source.positionTime, 0, positionTime, 0, source.size);
+        size = source.size;
+    }
+
+}
@@ -0,0 +1,51 @@
+package lakkie.flight.globepanel;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One published generation of aircraft. The columns must not be read past {@link #size()}, and must only be read
+ * between {@link PlaneBuffer#acquire()} and {@link PlaneBuffer#release(PlaneSnapshot)}, because once every reader
+ * has released a retired snapshot its columns are reused for a later generation.
+ */
+public final class PlaneSnapshot {
+
+    private final PlaneColumns columns;
+    private final int size;
+    private final long generation;
+    private final long publishTime;
+
+    /**
+     * The number of readers currently using the columns
+     */
+    final AtomicInteger readers = new AtomicInteger();
+
+    PlaneSnapshot(PlaneColumns columns, long generation, long publishTime) {
+        this.columns = columns;
+        this.size = columns.size;
+        this.generation = generation;
+        this.publishTime = publishTime;
+    }
+
+    public PlaneColumns columns() {
+        return columns;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Increases by one every publish
+     */
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * The value of System.currentTimeMillis() when this snapshot was published
+     */
+    public long publishTime() {
+        return publishTime;
+    }
+
+}
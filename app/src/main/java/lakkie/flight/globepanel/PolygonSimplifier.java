@@ -0,0 +1,102 @@
+package lakkie.flight.globepanel;
+
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * Douglas-Peucker simplification of map outlines. Vertices are dropped as long as the outline never moves more than
+ * the given tolerance from where it was.
+ */
+public class PolygonSimplifier {
+
+    private PolygonSimplifier() { }
+
+    /**
+     * @param tolerance The furthest any removed vertex may be from the simplified outline, in world units
+     * @return A new closed outline through the kept vertices in their original order
+     */
+    public static Path2D.Float simplify(int[] xPoints, int[] yPoints, int numPoints, double tolerance) {
+        boolean[] keep = new boolean[numPoints];
+        if (numPoints <= 3 || tolerance <= 0) {
+            Arrays.fill(keep, true);
+            return toOutline(xPoints, yPoints, numPoints, keep, numPoints);
+        }
+
+        keep[0] = true;
+        keep[numPoints - 1] = true;
+        int keptCount = 2;
+
+        // Each pair of entries is a span of vertices still to be simplified
+        int[] spans = new int[64];
+        int spanCount = 0;
+        spans[spanCount++] = 0;
+        spans[spanCount++] = numPoints - 1;
+        double toleranceSquared = tolerance * tolerance;
+
+        while (spanCount > 0) {
+            int end = spans[--spanCount];
+            int start = spans[--spanCount];
+
+            int furthest = -1;
+            double furthestDistance = toleranceSquared;
+            for (int i = start + 1; i < end; i++) {
+                double distance = distanceToSegmentSquared(xPoints[i], yPoints[i],
+                    xPoints[start], yPoints[start], xPoints[end], yPoints[end]);
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+
+            if (furthest != -1) {
+                keep[furthest] = true;
+                keptCount++;
+                if (spanCount + 4 > spans.length) {
+                    spans = Arrays.copyOf(spans, spans.length * 2);
+                }
+                spans[spanCount++] = start;
+                spans[spanCount++] = furthest;
+                spans[spanCount++] = furthest;
+                spans[spanCount++] = end;
+            }
+        }
+
+        return toOutline(xPoints, yPoints, numPoints, keep, keptCount);
+    }
+
+    /**
+     * Joins the kept vertices into a closed outline, sized so it never grows while being built.
+     */
+    private static Path2D.Float toOutline(int[] xPoints, int[] yPoints, int numPoints, boolean[] keep, int keptCount) {
+        // Even-odd, like the java.awt.Polygon the outlines used to be
+        Path2D.Float outline = new Path2D.Float(Path2D.WIND_EVEN_ODD, keptCount + 1);
+        boolean first = true;
+        for (int i = 0; i < numPoints; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            if (first) {
+                outline.moveTo(xPoints[i], yPoints[i]);
+                first = false;
+            } else {
+                outline.lineTo(xPoints[i], yPoints[i]);
+            }
+        }
+        if (!first) {
+            outline.closePath();
+        }
+        return outline;
+    }
+
+    private static double distanceToSegmentSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = (lengthSquared == 0) ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double nearestX = ax + t * dx - px;
+        double nearestY = ay + t * dy - py;
+        return nearestX * nearestX + nearestY * nearestY;
+    }
+
+}
@@ -20,6 +20,20 @@ public class ProjectionConverter {
             0.67182264, 0.75336633, 0.83518048, 0.91537187, 0.99339958, 1.06872269, 1.14066505, 1.20841528, 1.27035062,
             1.31998003, 1.3523 };
 
+    /**
+     * Difference between each entry of AA and BB and the next, so batch projection can interpolate with one multiply
+     */
+    private static final double[] AA_STEP = steps(AA), BB_STEP = steps(BB);
+    private static final double RADIAN = 0.017453293; // pi / 180
+
+    /**
+     * Inverse of BB. Entry k is the interval of BB holding the value k / INVERSE_BB_SCALE. The buckets are narrower
+     * than the narrowest interval, so the value is either in that interval or the next.
+     */
+    private static final int INVERSE_BB_BUCKETS = 64;
+    private static final double INVERSE_BB_SCALE = INVERSE_BB_BUCKETS / BB[BB.length - 1];
+    private static final int[] INVERSE_BB = invertTable(BB, INVERSE_BB_BUCKETS);
+
     public ProjectionConverter(double mapWidth, double mapHeight, double offsetX, double offsetY) {
         this.mapWidth = mapWidth;
         this.mapHeight = mapHeight;
@@ -40,7 +54,7 @@ public class ProjectionConverter {
         double latSign = Math.signum(lat);
         lng = Math.abs(lng);
         lat = Math.abs(lat);
-        final double radian = 0.017453293; // pi / 180
+        final double radian = RADIAN;
 
         double low = roundToNearest(5, lat - 0.0000000001);
         low = (lat == 0) ? 0 : low;
@@ -59,10 +73,142 @@ public class ProjectionConverter {
         return new Point(x, y);
     }
 
+    /**
+     * Projects count points to screen space at once without allocating. Gives the same result as projectToScreen for
+     * each point, give or take rounding in the last few bits.
+     * @param x Receives the screen x of each point. May be the same length as lat, or longer.
+     */
+    public void projectToScreen(double[] lat, double[] lng, float[] x, float[] y, int count) {
+        double xScale = RADIAN * earthRadius;
+        double originX = offsetX + (mapWidth / 2) + CANVAS_OFFSET_X;
+        double originY = (mapHeight / 2) - offsetY + CANVAS_OFFSET_Y;
+        for (int i = 0; i < count; i++) {
+            projectToScreen(lat, lng, x, y, i, xScale, originX, originY);
+        }
+    }
+
+    /**
+     * Projects only the points at the given indices, reading and writing each at the same index.
+     * @param indices The points to project. Only the first count are read.
+     */
+    public void projectToScreen(double[] lat, double[] lng, float[] x, float[] y, int[] indices, int count) {
+        double xScale = RADIAN * earthRadius;
+        double originX = offsetX + (mapWidth / 2) + CANVAS_OFFSET_X;
+        double originY = (mapHeight / 2) - offsetY + CANVAS_OFFSET_Y;
+        for (int k = 0; k < count; k++) {
+            projectToScreen(lat, lng, x, y, indices[k], xScale, originX, originY);
+        }
+    }
+
+    /**
+     * Same as project, but with the signs folded into the interpolated table values instead of being split off with
+     * signum, and the constant parts of the result worked out once per batch.
+     */
+    private void projectToScreen(double[] lat, double[] lng, float[] x, float[] y, int i,
+            double xScale, double originX, double originY) {
+        double absLat = Math.abs(lat[i]);
+        // Same rounding as project, which puts a latitude of exactly 5 in the interval below it
+        int lowIndex = Math.max(0, (int) Math.floor((absLat - 0.0000000001) / 5));
+        double ratio = (absLat - lowIndex * 5) / 5;
+
+        double adjAA = AA_STEP[lowIndex] * ratio + AA[lowIndex];
+        double adjBB = BB_STEP[lowIndex] * ratio + BB[lowIndex];
+
+        x[i] = (float) (originX + adjAA * lng[i] * xScale);
+        y[i] = (float) (originY - Math.copySign(adjBB, lat[i]) * earthRadius);
+    }
+
+    /**
+     * Finds where a point in screen space is on the globe. This is the exact inverse of projectToScreen, so the only
+     * error is floating point rounding. Points off the edge of the map are clamped to it.
+     */
+    public LatLng screenToGeo(double screenX, double screenY) {
+        double originX = offsetX + (mapWidth / 2) + CANVAS_OFFSET_X;
+        double originY = (mapHeight / 2) - offsetY + CANVAS_OFFSET_Y;
+        double lat = inverseLatitude((originY - screenY) / earthRadius);
+        return new LatLng(lat, inverseLongitude(screenX - originX, lat));
+    }
+
+    /**
+     * Finds the smallest latitude and longitude box holding every point of a rectangle in screen space.
+     */
+    public GeoBounds screenToGeoBounds(double minX, double minY, double maxX, double maxY) {
+        double originX = offsetX + (mapWidth / 2) + CANVAS_OFFSET_X;
+        double originY = (mapHeight / 2) - offsetY + CANVAS_OFFSET_Y;
+        // Screen y only depends on latitude, and increases going south
+        double minLat = inverseLatitude((originY - maxY) / earthRadius);
+        double maxLat = inverseLatitude((originY - minY) / earthRadius);
+
+        // The meridians fan out towards the poles, so the furthest longitudes are at the edge of the latitude range
+        // nearest a pole and the nearest ones at the latitude closest to the equator
+        double poleLat = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double equatorLat = (minLat <= 0 && maxLat >= 0) ? 0 : Math.min(Math.abs(minLat), Math.abs(maxLat));
+        double minLng = Math.min(inverseLongitude(minX - originX, poleLat), inverseLongitude(minX - originX, equatorLat));
+        double maxLng = Math.max(inverseLongitude(maxX - originX, poleLat), inverseLongitude(maxX - originX, equatorLat));
+        return new GeoBounds(minLat, minLng, maxLat, maxLng);
+    }
+
+    /**
+     * @param signedBB Interpolated BB with the sign of the latitude, which is how far north of the equator a point is
+     * in earth radii
+     */
+    private static double inverseLatitude(double signedBB) {
+        double bb = Math.min(Math.abs(signedBB), BB[BB.length - 1]);
+        int interval = INVERSE_BB[(int) (bb * INVERSE_BB_SCALE)];
+        if (interval + 1 < BB.length - 1 && bb > BB[interval + 1]) {
+            interval++;
+        }
+        double lat = (interval + (bb - BB[interval]) / BB_STEP[interval]) * 5;
+        return Math.copySign(lat, signedBB);
+    }
+
+    /**
+     * @param distanceX Screen distance east of the prime meridian
+     */
+    private double inverseLongitude(double distanceX, double lat) {
+        double absLat = Math.abs(lat);
+        int lowIndex = Math.max(0, Math.min(AA.length - 2, (int) Math.floor((absLat - 0.0000000001) / 5)));
+        double adjAA = AA_STEP[lowIndex] * ((absLat - lowIndex * 5) / 5) + AA[lowIndex];
+        double lng = distanceX / (adjAA * RADIAN * earthRadius);
+        return Math.max(-180, Math.min(180, lng));
+    }
+
+    /**
+     * @return For each of buckets evenly spaced values from 0 to the last entry of the increasing table, the index of
+     * the interval it's in
+     */
+    private static int[] invertTable(double[] table, int buckets) {
+        int[] inverse = new int[buckets + 1];
+        int interval = 0;
+        for (int k = 0; k <= buckets; k++) {
+            double value = k * table[table.length - 1] / buckets;
+            while (interval + 1 < table.length - 1 && value >= table[interval + 1]) {
+                interval++;
+            }
+            inverse[k] = interval;
+        }
+        return inverse;
+    }
+
+    private static double[] steps(double[] table) {
+        double[] steps = new double[table.length];
+        for (int i = 0; i + 1 < table.length; i++) {
+            steps[i] = table[i + 1] - table[i];
+        }
+        return steps;
+    }
+
     private double roundToNearest(double roundTo, double value) {
         return Math.floor(value / roundTo) * roundTo;
     }
 
+    public record LatLng(double lat, double lng) {
+        @Override
+        public final String toString() {
+            return String.format("(%.4f, %.4f)", lat, lng);
+        }
+    }
+
     public record Point(double x, double y) {
         @Override
         public final String toString() {
@@ -0,0 +1,154 @@
+package lakkie.flight.globepanel;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over world space for finding which items fall inside a rectangle, such as the part of the world the
+ * camera can see. Items are stored per cell in one flat array, so building and querying don't allocate once the
+ * arrays are big enough. Items outside the grid's bounds are put in the nearest edge cell.
+ *
+ * Building is not thread safe, but once built any number of threads may query with their own {@link Results}.
+ */
+public class SpatialGrid {
+
+    private final float minX, minY, cellWidth, cellHeight;
+    private final int columns, rows;
+
+    /**
+     * Items in cell c are items[cellStart[c]] up to but excluding items[cellStart[c + 1]]
+     */
+    private final int[] cellStart;
+    private int[] items = new int[0];
+    private int itemCount = 0;
+
+    public SpatialGrid(float minX, float minY, float maxX, float maxY, int columns, int rows) {
+        this.minX = minX;
+        this.minY = minY;
+        this.cellWidth = (maxX - minX) / columns;
+        this.cellHeight = (maxY - minY) / rows;
+        this.columns = columns;
+        this.rows = rows;
+        this.cellStart = new int[columns * rows + 1];
+    }
+
+    /**
+     * Replaces the contents of the grid with count points.
+     */
+    public void buildPoints(float[] x, float[] y, int count) {
+        build(x, y, x, y, count);
+    }
+
+    /**
+     * Replaces the contents of the grid with count boxes. A box is added to every cell it overlaps.
+     */
+    public void build(float[] boxMinX, float[] boxMinY, float[] boxMaxX, float[] boxMaxY, int count) {
+        // Count how many items land in each cell, shifted by one so the prefix sum gives each cell's start
+        Arrays.fill(cellStart, 0);
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int startColumn = column(boxMinX[i]), endColumn = column(boxMaxX[i]);
+            int startRow = row(boxMinY[i]), endRow = row(boxMaxY[i]);
+            for (int row = startRow; row <= endRow; row++) {
+                for (int column = startColumn; column <= endColumn; column++) {
+                    cellStart[row * columns + column + 1]++;
+                    total++;
+                }
+            }
+        }
+        for (int cell = 1; cell < cellStart.length; cell++) {
+            cellStart[cell] += cellStart[cell - 1];
+        }
+
+        if (items.length < total) {
+            items = new int[Math.max(total, items.length * 2)];
+        }
+        itemCount = count;
+
+        // Fill each cell using its start as a cursor, which leaves it at the next cell's start, then shift them back
+        for (int i = 0; i < count; i++) {
+            int startColumn = column(boxMinX[i]), endColumn = column(boxMaxX[i]);
+            int startRow = row(boxMinY[i]), endRow = row(boxMaxY[i]);
+            for (int row = startRow; row <= endRow; row++) {
+                for (int column = startColumn; column <= endColumn; column++) {
+                    items[cellStart[row * columns + column]++] = i;
+                }
+            }
+        }
+        System.arraycopy(cellStart, 0, cellStart, 1, cellStart.length - 1);
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Finds every item in a cell that overlaps the rectangle. Items are returned at most once, but may lie slightly
+     * outside the rectangle since whole cells are returned.
+     * @return The number of items found, which are in results.items
+     */
+    public int query(float queryMinX, float queryMinY, float queryMaxX, float queryMaxY, Results results) {
+        results.begin(itemCount);
+        int startColumn = column(queryMinX), endColumn = column(queryMaxX);
+        int startRow = row(queryMinY), endRow = row(queryMaxY);
+        for (int row = startRow; row <= endRow; row++) {
+            int rowOffset = row * columns;
+            for (int k = cellStart[rowOffset + startColumn]; k < cellStart[rowOffset + endColumn + 1]; k++) {
+                results.add(items[k]);
+            }
+        }
+        return results.count;
+    }
+
+    /**
+     * The number of items the grid was last built with
+     */
+    public int size() {
+        return itemCount;
+    }
+
+    private int column(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - minX) / cellWidth)));
+    }
+
+    private int row(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - minY) / cellHeight)));
+    }
+
+    /**
+     * Reusable output of {@link SpatialGrid#query}. Each thread querying a grid needs its own.
+     */
+    public static class Results {
+
+        public int[] items = new int[256];
+        public int count = 0;
+
+        /**
+         * The query each item was last returned by, so items spanning several cells are only returned once
+         */
+        private int[] lastQuery = new int[0];
+        private int query = 0;
+
+        private void begin(int itemCount) {
+            count = 0;
+            if (lastQuery.length < itemCount) {
+                lastQuery = new int[Math.max(itemCount, lastQuery.length * 2)];
+                query = 0;
+            }
+            if (++query == 0) {
+                // Wrapped around, so old marks could look like this query's
+                Arrays.fill(lastQuery, 0);
+                query = 1;
+            }
+        }
+
+        private void add(int item) {
+            if (lastQuery[item] == query) {
+                return;
+            }
+            lastQuery[item] = query;
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            items[count++] = item;
+        }
+
+    }
+
+}
@@ -0,0 +1,38 @@
+package lakkie.flight.history;
+
+/**
+ * One position report read from a {@link TrackStore}. Reused between reads, so copy anything that needs to be kept.
+ */
+public class TrackRecord {
+
+    /**
+     * When the aircraft was at this position, in milliseconds since the epoch
+     */
+    public long timeMillis;
+    /**
+     * Where the same flight's previous record is in the store, or {@link TrackStore#NO_RECORD}
+     */
+    public long previous;
+    public String flightId, callsign;
+    public double lat, lng;
+    public float altitude;
+    /**
+     * Degrees clockwise from north
+     */
+    public float heading;
+    /**
+     * Ground speed in knots
+     */
+    public float speed;
+    /**
+     * Set when the flight stopped being tracked at this time, in which case the position is its last known one
+     */
+    public boolean removed;
+
+    @Override
+    public String toString() {
+        return String.format("%s %s at %d: %.4f, %.4f, %.0fft, %.0f deg, %.0fkt%s", flightId, callsign, timeMillis, lat,
+            lng, altitude, heading, speed, removed ? " (removed)" : "");
+    }
+
+}
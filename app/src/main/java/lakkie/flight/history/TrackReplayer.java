@@ -0,0 +1,276 @@
+package lakkie.flight.history;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.tracking.AircraftDelta;
+import lakkie.flight.tracking.AircraftStore;
+import lakkie.flight.tracking.FR24AircraftColumns;
+import lakkie.flight.tracking.FR24TrackerThread;
+
+/**
+ * Plays a {@link TrackStore} recording back into a {@link PlaneBuffer}, in place of the live tracker. Records are read
+ * from disk a tick at a time as the replay clock reaches them, so a recording is never loaded whole, and playback
+ * keeps going if the recording is still being appended to, even by another process through a read only store.
+ *
+ * The replay clock runs at between MIN_SPEED and MAX_SPEED times real time. Seeking replays from far enough before
+ * the time sought to take in a keyframe, then jumps straight to it.
+ */
+public class TrackReplayer implements AutoCloseable {
+
+    public static final double MIN_SPEED = 1, MAX_SPEED = 100;
+
+    /**
+     * How often the replay clock is checked for new records
+     */
+    private static final long TICK_MS = 20L;
+    /**
+     * How far before the last record at the time sought to start replaying. The tracker writes a keyframe on the first
+     * successful poll at least KEYFRAME_INTERVAL_MS after the last one, so keyframes are further apart than that by up
+     * to a poll interval or a backoff. Twice the interval and the longest backoff takes in a keyframe from every
+     * region, unless one has been failing for longer than that.
+     */
+    private static final long REWIND_MS = 2 * FR24TrackerThread.KEYFRAME_INTERVAL_MS + FR24TrackerThread.MAX_BACKOFF_MS;
+
+    private final TrackStore recording;
+    private final ProjectionConverter projector;
+    private final PlaneBuffer planes;
+    private final Runnable onUpdate;
+    private final AircraftStore store;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this, so the clock can be read and changed from any thread
+    private long anchorReplayTime;
+    private long anchorNanos;
+    private double speed;
+    private long seekTo = -1;
+
+    // Only touched by whichever thread steps the replay
+    private final FR24AircraftColumns world = new FR24AircraftColumns();
+    private final Map<String, Integer> indexByFlightId = new HashMap<>();
+    private final TrackRecord record = new TrackRecord();
+    /**
+     * Set by rewind, so the next step publishes even if the store ends up the same as before
+     */
+    private boolean rewound = false;
+    /**
+     * The last record applied, or NO_RECORD if nothing has been applied since starting or rewinding
+     */
+    private long lastApplied = TrackStore.NO_RECORD;
+    /**
+     * Where to read from when nothing has been applied, or NO_RECORD to start from the oldest record
+     */
+    private long nextRecord = TrackStore.NO_RECORD;
+
+    /**
+     * @param onUpdate Called from the replay thread after aircraft have changed
+     */
+    public TrackReplayer(TrackStore recording, ProjectionConverter projector, PlaneBuffer planes, Runnable onUpdate) {
+        this.recording = recording;
+        this.projector = projector;
+        this.planes = planes;
+        this.onUpdate = onUpdate;
+        this.store = new AircraftStore(planes.getCallsigns());
+        this.anchorReplayTime = recording.oldestTime();
+        this.anchorNanos = System.nanoTime();
+        this.speed = MIN_SPEED;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Replay Aircraft");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts playing from the current replay time in the background.
+     */
+    public void start() {
+        synchronized (this) {
+            anchorNanos = System.nanoTime();
+        }
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The time in the recording being shown, in milliseconds since the epoch. Safe to call from any thread.
+     */
+    public synchronized long getReplayTime() {
+        return anchorReplayTime + (long) ((System.nanoTime() - anchorNanos) / 1e6 * speed);
+    }
+
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Changes how many times faster than real time the recording plays, clamped to MIN_SPEED and MAX_SPEED.
+     */
+    public synchronized void setSpeed(double speed) {
+        anchorReplayTime = getReplayTime();
+        anchorNanos = System.nanoTime();
+        this.speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+    }
+
+    /**
+     * Jumps to a time in the recording, clamped to the times recorded. Takes effect on the next tick.
+     */
+    public synchronized void seek(long timeMillis) {
+        long clamped = Math.max(recording.oldestTime(), Math.min(recording.newestTime(), timeMillis));
+        anchorReplayTime = clamped;
+        anchorNanos = System.nanoTime();
+        seekTo = clamped;
+    }
+
+    /**
+     * The first and last times in the recording, which may grow if it's still being recorded
+     */
+    public long getStartTime() {
+        return recording.oldestTime();
+    }
+
+    public long getEndTime() {
+        return recording.newestTime();
+    }
+
+    /**
+     * Stops playing and waits for the replay thread to finish. The recording isn't closed.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        try {
+            long target;
+            long seek;
+            synchronized (this) {
+                // Catch up with a recording that was empty when the clock started
+                long startTime = recording.oldestTime();
+                if (getReplayTime() < startTime) {
+                    anchorReplayTime = startTime;
+                    anchorNanos = System.nanoTime();
+                }
+                target = getReplayTime();
+                seek = seekTo;
+                seekTo = -1;
+            }
+            if (seek >= 0) {
+                rewind(seek);
+            }
+            AircraftDelta delta = step(target);
+            if (seek >= 0 || !delta.isEmpty()) {
+                onUpdate.run();
+            }
+        } catch (RuntimeException e) {
+            // Anything thrown here would stop the scheduler running tick again
+            System.err.println("Unexpected error while replaying flights!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Applies every record up to a time and publishes the result if anything was added, updated or removed, or if it's
+     * the first step since a rewind. Called by the replay thread, or directly when
+     * replaying without starting it, such as to feed a benchmark.
+     * @return The changes made. Only valid until the next step.
+     */
+    public AircraftDelta step(long targetTime) {
+        long position;
+        if (lastApplied != TrackStore.NO_RECORD) {
+            position = recording.nextPosition(lastApplied);
+        } else {
+            // Looked up again each step, in case nothing had been recorded yet
+            position = (nextRecord != TrackStore.NO_RECORD) ? nextRecord : recording.firstPosition();
+        }
+        while (position != TrackStore.NO_RECORD && recording.read(position, record) && record.timeMillis <= targetTime) {
+            apply(record);
+            lastApplied = position;
+            position = recording.nextPosition(position);
+        }
+
+        AircraftDelta delta = store.update(world, projector, GeoBounds.WORLD, targetTime);
+        if (rewound || !delta.isEmpty()) {
+            planes.publish(store.getColumns(), delta.changed, delta.changedCount);
+            rewound = false;
+        }
+        return delta;
+    }
+
+    /**
+     * Clears every aircraft and starts reading again from REWIND_MS before the last record at or before a time, so
+     * the next step rebuilds what was being tracked then. Going back from the last record rather than the time itself
+     * still reaches a keyframe when the time is in a gap where polls were failing.
+     */
+    public void rewind(long timeMillis) {
+        world.clear();
+        indexByFlightId.clear();
+        lastApplied = TrackStore.NO_RECORD;
+        rewound = true;
+
+        long anchor = timeMillis;
+        long after = recording.positionAt(timeMillis + 1);
+        if (after == TrackStore.NO_RECORD) {
+            anchor = Math.min(timeMillis, recording.newestTime());
+        } else {
+            long before = recording.previousPosition(after);
+            if (before != TrackStore.NO_RECORD && recording.read(before, record)) {
+                anchor = record.timeMillis;
+            }
+        }
+        nextRecord = recording.positionAt(anchor - REWIND_MS);
+    }
+
+    private void apply(TrackRecord record) {
+        Integer existing = indexByFlightId.get(record.flightId);
+        if (record.removed) {
+            if (existing != null) {
+                remove(existing);
+            }
+            return;
+        }
+        if (existing == null) {
+            indexByFlightId.put(record.flightId, world.size);
+            world.add(record.flightId, record.callsign, record.lat, record.lng, record.altitude, record.heading,
+                record.speed);
+            return;
+        }
+        int index = existing;
+        world.callsign[index] = record.callsign;
+        world.lat[index] = record.lat;
+        world.lng[index] = record.lng;
+        world.altitude[index] = record.altitude;
+        world.heading[index] = record.heading;
+        world.speed[index] = record.speed;
+    }
+
+    /**
+     * Removes an aircraft by moving the last one into its place
+     */
+    private void remove(int index) {
+        indexByFlightId.remove(world.flightId[index]);
+        int last = --world.size;
+        if (index != last) {
+            world.flightId[index] = world.flightId[last];
+            world.callsign[index] = world.callsign[last];
+            world.lat[index] = world.lat[last];
+            world.lng[index] = world.lng[last];
+            world.altitude[index] = world.altitude[last];
+            world.heading[index] = world.heading[last];
+            world.speed[index] = world.speed[last];
+            indexByFlightId.put(world.flightId[index], index);
+        }
+    }
+
+}
@@ -0,0 +1,600 @@
+package lakkie.flight.history;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of aircraft positions, kept on disk in a ring of memory-mapped segment files so hours of traffic
+ * don't live on the heap. Every record is the same size, so a record's position in the store is just its segment
+ * and its index in that segment. Each record points back to the same flight's previous record, and the store keeps
+ * the latest record of every flight in memory, so a flight's trail is found by walking back from there without
+ * scanning.
+ *
+ * A new segment is started once the current one is full. The oldest segments are deleted once there are more than
+ * maxSegments, or once everything in them is older than maxAgeMillis. All values are big endian:
+ *
+ * <pre>
+ * Segment header: int magic ("FTRK"), int version, int sequence, int capacity, int count, int unused,
+ *                 long firstTime, long lastTime, padded to 64 bytes
+ * Record:         long time, long previous, double lat, double lng, float altitude, float heading, float speed,
+ *                 byte flags, byte flightId[11], byte callsign[8]
+ * </pre>
+ *
+ * Flight IDs and callsigns are stored as zero padded ASCII, so longer ones are cut short. Every method is
+ * synchronized, so the tracker can append while other threads read.
+ */
+public class TrackStore implements AutoCloseable {
+
+    public static final int MAGIC = 0x4654524B;
+    public static final int VERSION = 1;
+    /**
+     * Position of no record, such as before a flight's first record
+     */
+    public static final long NO_RECORD = -1;
+    public static final int RECORD_BYTES = 64;
+
+    /**
+     * 64 MiB segments
+     */
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+    public static final int DEFAULT_MAX_SEGMENTS = 32;
+    public static final long DEFAULT_MAX_AGE_MILLIS = 6 * 60 * 60 * 1000L;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int HEADER_SEQUENCE = 8, HEADER_CAPACITY = 12, HEADER_COUNT = 16, HEADER_FIRST_TIME = 24,
+        HEADER_LAST_TIME = 32;
+    private static final int RECORD_TIME = 0, RECORD_PREVIOUS = 8, RECORD_LAT = 16, RECORD_LNG = 24, RECORD_ALTITUDE = 32,
+        RECORD_HEADING = 36, RECORD_SPEED = 40, RECORD_FLAGS = 44, RECORD_FLIGHT_ID = 45, RECORD_CALLSIGN = 56;
+    private static final int FLIGHT_ID_BYTES = 11, CALLSIGN_BYTES = 8;
+    private static final byte FLAG_REMOVED = 1;
+    private static final String SEGMENT_PREFIX = "track-", SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final int maxSegments;
+    private final long maxAgeMillis;
+    private final boolean readOnly;
+    /**
+     * Oldest first, with consecutive sequence numbers. The last is the one being appended to.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    /**
+     * The latest record of every flight with a record still in the store
+     */
+    private final Map<String, FlightEntry> flights = new HashMap<>();
+    private final byte[] stringBytes = new byte[FLIGHT_ID_BYTES];
+    private boolean closed = false;
+    /**
+     * Whether flights has been built from the segments found when opening, which is put off until it's needed so
+     * that opening a recording to replay doesn't read every record
+     */
+    private boolean indexed = false;
+
+    /**
+     * Opens the store in a directory with the default segment size and retention, creating it if needed.
+     */
+    public TrackStore(Path directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS, DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    /**
+     * Opens the store in a directory, creating it if needed. Segments already there are kept and appended to.
+     * @param recordsPerSegment How many records fit in each segment file. Only used for new segments.
+     * @param maxSegments The most segment files to keep, which bounds the store's size on disk
+     * @param maxAgeMillis Segments are deleted once their newest record is this old
+     */
+    public TrackStore(Path directory, int recordsPerSegment, int maxSegments, long maxAgeMillis) throws IOException {
+        this(directory, recordsPerSegment, maxSegments, maxAgeMillis, false);
+    }
+
+    private TrackStore(Path directory, int recordsPerSegment, int maxSegments, long maxAgeMillis, boolean readOnly)
+            throws IOException {
+        if (recordsPerSegment < 1 || maxSegments < 1) {
+            throw new IllegalArgumentException(String.format("Need at least 1 record and 1 segment, got: %d and %d",
+                recordsPerSegment, maxSegments));
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxSegments = maxSegments;
+        this.maxAgeMillis = maxAgeMillis;
+        this.readOnly = readOnly;
+
+        if (!readOnly) {
+            Files.createDirectories(directory);
+        }
+        for (Path path : listSegmentFiles(directory)) {
+            Segment segment = Segment.open(path, readOnly);
+            if (!segments.isEmpty() && segment.sequence != segments.get(segments.size() - 1).sequence + 1) {
+                throw new IOException(String.format("Track segment %s doesn't follow on from the one before it", path));
+            }
+            segments.add(segment);
+        }
+    }
+
+    /**
+     * Opens a recording to read, such as to replay it. Segments are mapped read only and nothing is ever written or
+     * deleted, so the files only need to be readable. If another process is still recording to it, what it appends is
+     * picked up whenever a reader reaches the newest record.
+     * @throws IOException If the directory doesn't exist or has no track segments in it
+     */
+    public static TrackStore openReadOnly(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException(String.format("No track recording at %s", directory));
+        }
+        TrackStore store = new TrackStore(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_SEGMENTS,
+            DEFAULT_MAX_AGE_MILLIS, true);
+        if (store.segments.isEmpty()) {
+            throw new IOException(String.format("%s has no track segments in it", directory));
+        }
+        return store;
+    }
+
+    /**
+     * Appends a position report.
+     * @param removed Whether the flight stopped being tracked at this time, rather than being at this position
+     * @return Where the record was written
+     */
+    public synchronized long append(long timeMillis, String flightId, String callsign, double lat, double lng,
+            double altitude, double heading, double speed, boolean removed) throws IOException {
+        if (closed) {
+            throw new IOException("Track store is closed");
+        }
+        if (readOnly) {
+            throw new IOException("Track store was opened read only");
+        }
+        ensureIndexed();
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.count == segment.capacity) {
+            segment = startSegment((segment == null) ? 0 : segment.sequence + 1);
+        }
+        dropExpiredSegments(timeMillis);
+
+        FlightEntry flight = flights.get(flightId);
+        if (flight == null) {
+            flight = new FlightEntry();
+            flights.put(flightId, flight);
+        }
+
+        int index = segment.count;
+        ByteBuffer buffer = segment.buffer;
+        int offset = HEADER_BYTES + index * RECORD_BYTES;
+        buffer.putLong(offset + RECORD_TIME, timeMillis);
+        buffer.putLong(offset + RECORD_PREVIOUS, flight.latest);
+        buffer.putDouble(offset + RECORD_LAT, lat);
+        buffer.putDouble(offset + RECORD_LNG, lng);
+        buffer.putFloat(offset + RECORD_ALTITUDE, (float) altitude);
+        buffer.putFloat(offset + RECORD_HEADING, (float) heading);
+        buffer.putFloat(offset + RECORD_SPEED, (float) speed);
+        buffer.put(offset + RECORD_FLAGS, removed ? FLAG_REMOVED : 0);
+        putString(buffer, offset + RECORD_FLIGHT_ID, flightId, FLIGHT_ID_BYTES);
+        putString(buffer, offset + RECORD_CALLSIGN, callsign, CALLSIGN_BYTES);
+        segment.appended(timeMillis);
+
+        long position = position(segment.sequence, index);
+        flight.latest = position;
+        return position;
+    }
+
+    /**
+     * Reads the record at a position.
+     * @return Whether there is still a record there, since old segments are deleted
+     */
+    public synchronized boolean read(long position, TrackRecord record) {
+        Segment segment = segmentAt(position);
+        if (segment == null) {
+            return false;
+        }
+        ByteBuffer buffer = segment.buffer;
+        int offset = HEADER_BYTES + index(position) * RECORD_BYTES;
+        record.timeMillis = buffer.getLong(offset + RECORD_TIME);
+        record.previous = buffer.getLong(offset + RECORD_PREVIOUS);
+        record.lat = buffer.getDouble(offset + RECORD_LAT);
+        record.lng = buffer.getDouble(offset + RECORD_LNG);
+        record.altitude = buffer.getFloat(offset + RECORD_ALTITUDE);
+        record.heading = buffer.getFloat(offset + RECORD_HEADING);
+        record.speed = buffer.getFloat(offset + RECORD_SPEED);
+        record.removed = (buffer.get(offset + RECORD_FLAGS) & FLAG_REMOVED) != 0;
+        record.flightId = getString(buffer, offset + RECORD_FLIGHT_ID, FLIGHT_ID_BYTES);
+        record.callsign = getString(buffer, offset + RECORD_CALLSIGN, CALLSIGN_BYTES);
+        return true;
+    }
+
+    /**
+     * Finds a flight's most recent positions without allocating, newest first. Records of the flight being removed
+     * are skipped, since they have no position.
+     * @param sinceMillis Only positions at or after this time are returned
+     * @param lat Receives the latitudes. The trail stops once it's full.
+     * @return The number of positions found
+     */
+    public synchronized int trail(String flightId, long sinceMillis, double[] lat, double[] lng, long[] timeMillis) {
+        ensureIndexed();
+        FlightEntry flight = flights.get(flightId);
+        int count = 0;
+        long position = (flight == null) ? NO_RECORD : flight.latest;
+        while (position != NO_RECORD && count < lat.length) {
+            Segment segment = segmentAt(position);
+            if (segment == null) {
+                break;
+            }
+            int offset = HEADER_BYTES + index(position) * RECORD_BYTES;
+            long time = segment.buffer.getLong(offset + RECORD_TIME);
+            if (time < sinceMillis) {
+                break;
+            }
+            if ((segment.buffer.get(offset + RECORD_FLAGS) & FLAG_REMOVED) == 0) {
+                lat[count] = segment.buffer.getDouble(offset + RECORD_LAT);
+                lng[count] = segment.buffer.getDouble(offset + RECORD_LNG);
+                timeMillis[count] = time;
+                count++;
+            }
+            position = segment.buffer.getLong(offset + RECORD_PREVIOUS);
+        }
+        return count;
+    }
+
+    /**
+     * The position of the oldest record in the store, or NO_RECORD if it's empty
+     */
+    public synchronized long firstPosition() {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            for (Segment segment : segments) {
+                if (segment.count > 0) {
+                    return position(segment.sequence, 0);
+                }
+            }
+            followWriter();
+        }
+        return NO_RECORD;
+    }
+
+    /**
+     * Finds the oldest record at or after a time. Records are assumed to be appended in time order.
+     * @return Its position, or NO_RECORD if every record is older
+     */
+    public synchronized long positionAt(long timeMillis) {
+        for (Segment segment : segments) {
+            if (segment.count == 0 || segment.lastTime < timeMillis) {
+                continue;
+            }
+            int low = 0, high = segment.count - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (segment.buffer.getLong(HEADER_BYTES + middle * RECORD_BYTES + RECORD_TIME) < timeMillis) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return position(segment.sequence, low);
+        }
+        return NO_RECORD;
+    }
+
+    /**
+     * The time of the oldest record, or 0 if the store is empty
+     */
+    public synchronized long oldestTime() {
+        long position = firstPosition();
+        return (position == NO_RECORD) ? 0 : segmentAt(position).buffer.getLong(HEADER_BYTES + RECORD_TIME);
+    }
+
+    /**
+     * The time of the newest record, or 0 if the store is empty
+     */
+    public synchronized long newestTime() {
+        followWriter();
+        long newest = 0;
+        for (Segment segment : segments) {
+            newest = Math.max(newest, segment.lastTime);
+        }
+        return newest;
+    }
+
+    /**
+     * The position of the record after the one at position, or NO_RECORD if it's the newest or has been deleted
+     */
+    public synchronized long nextPosition(long position) {
+        Segment segment = segmentAt(position);
+        if (segment == null) {
+            return NO_RECORD;
+        }
+        int index = index(position) + 1;
+        if (index == segment.count) {
+            followWriter();
+        }
+        if (index < segment.count) {
+            return position(segment.sequence, index);
+        }
+        Segment next = segmentAt(position(segment.sequence + 1, 0));
+        return (next == null) ? NO_RECORD : position(next.sequence, 0);
+    }
+
+    /**
+     * The position of the record before the one at position, or NO_RECORD if it's the oldest or has been deleted
+     */
+    public synchronized long previousPosition(long position) {
+        Segment segment = segmentAt(position);
+        if (segment == null) {
+            return NO_RECORD;
+        }
+        int index = index(position) - 1;
+        if (index >= 0) {
+            return position(segment.sequence, index);
+        }
+        for (int slot = segments.indexOf(segment) - 1; slot >= 0; slot--) {
+            Segment previous = segments.get(slot);
+            if (previous.count > 0) {
+                return position(previous.sequence, previous.count - 1);
+            }
+        }
+        return NO_RECORD;
+    }
+
+    /**
+     * The number of records in the store
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * The number of flights with a record in the store
+     */
+    public synchronized int getFlightCount() {
+        ensureIndexed();
+        return flights.size();
+    }
+
+    /**
+     * Writes everything appended out to disk and closes the store. The segments are unmapped once they're garbage
+     * collected.
+     */
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+        flights.clear();
+        closed = true;
+    }
+
+    private Segment startSegment(int sequence) throws IOException {
+        Segment previous = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (previous != null) {
+            previous.buffer.force();
+        }
+        Segment segment = Segment.create(segmentPath(sequence), sequence, recordsPerSegment);
+        segments.add(segment);
+        while (segments.size() > maxSegments) {
+            deleteOldestSegment();
+        }
+        return segment;
+    }
+
+    private void dropExpiredSegments(long nowMillis) {
+        // Never the segment being appended to
+        while (segments.size() > 1 && segments.get(0).lastTime < nowMillis - maxAgeMillis) {
+            deleteOldestSegment();
+        }
+    }
+
+    private void deleteOldestSegment() {
+        Segment oldest = segments.remove(0);
+        try {
+            Files.deleteIfExists(oldest.path);
+        } catch (IOException e) {
+            System.err.println("Failed to delete old track segment " + oldest.path);
+            e.printStackTrace();
+        }
+
+        // Flights whose latest record went with it have nothing left to find
+        long firstKept = position(oldest.sequence + 1, 0);
+        Iterator<FlightEntry> entries = flights.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().latest < firstKept) {
+                entries.remove();
+            }
+        }
+    }
+
+    /**
+     * Picks up anything another process has appended since a read only store last looked. The writer fills each
+     * segment before starting the next, so only the last segment can have grown, and a new segment only follows a
+     * full one. A new segment that is still being created is left for next time.
+     */
+    private void followWriter() {
+        if (!readOnly || closed || segments.isEmpty()) {
+            return;
+        }
+        Segment last = segments.get(segments.size() - 1);
+        last.reload();
+        while (last.count == last.capacity) {
+            Path path = segmentPath(last.sequence + 1);
+            if (!Files.exists(path)) {
+                return;
+            }
+            try {
+                last = Segment.open(path, true);
+            } catch (IOException e) {
+                return;
+            }
+            segments.add(last);
+        }
+    }
+
+    private Path segmentPath(int sequence) {
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        TrackRecord record = new TrackRecord();
+        for (long position = firstPosition(); position != NO_RECORD; position = nextPosition(position)) {
+            read(position, record);
+            FlightEntry flight = flights.get(record.flightId);
+            if (flight == null) {
+                flight = new FlightEntry();
+                flights.put(record.flightId, flight);
+            }
+            flight.latest = position;
+        }
+    }
+
+    private Segment segmentAt(long position) {
+        if (position < 0 || segments.isEmpty()) {
+            return null;
+        }
+        long slot = (position >>> 32) - segments.get(0).sequence;
+        if (slot < 0 || slot >= segments.size()) {
+            return null;
+        }
+        Segment segment = segments.get((int) slot);
+        return (index(position) < segment.count) ? segment : null;
+    }
+
+    private static long position(int sequence, int index) {
+        return ((long) sequence << 32) | index;
+    }
+
+    private static int index(long position) {
+        return (int) position;
+    }
+
+    private static void putString(ByteBuffer buffer, int offset, String value, int length) {
+        int valueLength = (value == null) ? 0 : value.length();
+        for (int i = 0; i < length; i++) {
+            char c = (i < valueLength) ? value.charAt(i) : 0;
+            buffer.put(offset + i, (byte) ((c < 128) ? c : '?'));
+        }
+    }
+
+    private String getString(ByteBuffer buffer, int offset, int length) {
+        int end = 0;
+        while (end < length && (stringBytes[end] = buffer.get(offset + end)) != 0) {
+            end++;
+        }
+        return new String(stringBytes, 0, end, StandardCharsets.US_ASCII);
+    }
+
+    private static List<Path> listSegmentFiles(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        // Zero padded, so name order is sequence order
+        paths.sort(null);
+        return paths;
+    }
+
+    private static class FlightEntry {
+        long latest = NO_RECORD;
+    }
+
+    /**
+     * One segment file, mapped for as long as it's in the store
+     */
+    private static class Segment {
+
+        final Path path;
+        final MappedByteBuffer buffer;
+        final int sequence, capacity;
+        int count;
+        long lastTime;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.sequence = buffer.getInt(HEADER_SEQUENCE);
+            this.capacity = buffer.getInt(HEADER_CAPACITY);
+            this.count = buffer.getInt(HEADER_COUNT);
+            this.lastTime = buffer.getLong(HEADER_LAST_TIME);
+        }
+
+        static Segment create(Path path, int sequence, int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) capacity * RECORD_BYTES);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(HEADER_SEQUENCE, sequence);
+                buffer.putInt(HEADER_CAPACITY, capacity);
+                buffer.putInt(HEADER_COUNT, 0);
+                buffer.putLong(HEADER_FIRST_TIME, 0);
+                buffer.putLong(HEADER_LAST_TIME, 0);
+                return new Segment(path, buffer);
+            }
+        }
+
+        static Segment open(Path path, boolean readOnly) throws IOException {
+            try (FileChannel channel = readOnly ? FileChannel.open(path, StandardOpenOption.READ)
+                    : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IOException(String.format("Track segment %s is truncated", path));
+                }
+                MappedByteBuffer buffer = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+                    0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    throw new IOException(String.format("%s is not a track segment", path));
+                }
+                int version = buffer.getInt(4);
+                if (version != VERSION) {
+                    throw new IOException(String.format("Unsupported track segment version in %s. Expected: %d, got: %d",
+                        path, VERSION, version));
+                }
+                int capacity = buffer.getInt(HEADER_CAPACITY), count = buffer.getInt(HEADER_COUNT);
+                if (capacity < 1 || count < 0 || count > capacity
+                        || channel.size() != HEADER_BYTES + (long) capacity * RECORD_BYTES) {
+                    throw new IOException(String.format("Track segment %s is truncated or corrupt", path));
+                }
+                return new Segment(path, buffer);
+            }
+        }
+
+        /**
+         * Reads the header again, after another process has appended
+         */
+        void reload() {
+            // Count first, since the writer updates it last
+            count = buffer.getInt(HEADER_COUNT);
+            lastTime = buffer.getLong(HEADER_LAST_TIME);
+        }
+
+        void appended(long timeMillis) {
+            if (count == 0) {
+                buffer.putLong(HEADER_FIRST_TIME, timeMillis);
+            }
+            count++;
+            lastTime = Math.max(lastTime, timeMillis);
+            // Count last, so a crash mid-append never counts a half written record
+            buffer.putLong(HEADER_LAST_TIME, lastTime);
+            buffer.putInt(HEADER_COUNT, count);
+        }
+
+    }
+
+}
@@ -0,0 +1,153 @@
+package lakkie.flight.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took in log-linear buckets, the way HdrHistogram does. Every power of two is cut into
+ * SUB_BUCKETS equal buckets, so any percentile is within about 3% of the true value, from a microsecond up to
+ * MAX_MICROS. Longer times are counted as MAX_MICROS.
+ *
+ * Recording is a few atomic adds and never allocates, so histograms can stay on in production. Any number of threads
+ * may record and read at once. Reads aren't a consistent snapshot while recording carries on, which is fine for
+ * percentiles.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 32;
+    /**
+     * About 71 minutes
+     */
+    public static final long MAX_MICROS = (1L << MAX_EXPONENT) - 1;
+
+    private final String name;
+    /**
+     * Values below 2 * SUB_BUCKETS have a bucket each. Above that, each power of two gets SUB_BUCKETS buckets.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(bucketIndex(MAX_MICROS) + 1);
+    private final AtomicLong count = new AtomicLong(), totalMicros = new AtomicLong(), maxMicros = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        // The top SUB_BUCKET_BITS + 1 bits, from SUB_BUCKETS to 2 * SUB_BUCKETS - 1
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (subBucket - SUB_BUCKETS);
+    }
+
+    /**
+     * The smallest value counted in a bucket
+     */
+    static long bucketStart(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = SUB_BUCKETS + index % SUB_BUCKETS;
+        return subBucket << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Counts one duration.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, Math.min(MAX_MICROS, nanos / 1000));
+        counts.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max = maxMicros.get();
+        while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+            max = maxMicros.get();
+        }
+    }
+
+    /**
+     * Counts the time since startNanos, which came from System.nanoTime().
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long recorded = count.get();
+        return (recorded == 0) ? 0 : totalMicros.get() / 1000.0 / recorded;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * @param percentile From 0 to 100
+     * @return The middle of the bucket the percentile falls in, in milliseconds, or 0 if nothing has been recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        long recorded = count.get();
+        if (recorded == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= wanted) {
+                long start = bucketStart(i);
+                long end = (i + 1 < counts.length()) ? bucketStart(i + 1) : start + 1;
+                // Never past the largest value actually recorded
+                return Math.min((start + end - 1) / 2.0, maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    @Override
+    public double getP50Millis() {
+        return getPercentileMillis(50);
+    }
+
+    @Override
+    public double getP90Millis() {
+        return getPercentileMillis(90);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return getPercentileMillis(99);
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    @Override
+    public final String toString() {
+        return String.format("%s: p50 %.2fms, p90 %.2fms, p99 %.2fms, max %.2fms (%d)", name, getP50Millis(),
+            getP90Millis(), getP99Millis(), getMaxMillis(), getCount());
+    }
+
+}
@@ -0,0 +1,25 @@
+package lakkie.flight.metrics;
+
+/**
+ * What JMX shows of a {@link LatencyHistogram}, registered as lakkie.flight:type=Latency,name=&lt;name&gt;
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP90Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    /**
+     * Forgets everything recorded so far
+     */
+    void reset();
+
+}
@@ -0,0 +1,105 @@
+package lakkie.flight.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms and counters for the hot paths of the tracker and renderer. They're always recording, since
+ * recording never allocates, and can be read from the debug overlay or over JMX once registerMBeans has been called.
+ */
+public final class Metrics {
+
+    private Metrics() { }
+
+    /**
+     * From sending a query until the response headers arrive
+     */
+    public static final LatencyHistogram FETCH = new LatencyHistogram("fetch");
+    /**
+     * Reading the response body into columns. The body streams in while it's parsed, so slow transfers count here.
+     */
+    public static final LatencyHistogram PARSE = new LatencyHistogram("parse");
+    /**
+     * Merging a query into an AircraftStore, which reprojects every aircraft that changed
+     */
+    public static final LatencyHistogram PROJECT = new LatencyHistogram("project");
+    /**
+     * Copying changed aircraft into the PlaneBuffer for the renderer, or when headless, writing them to the track store
+     * and output
+     */
+    public static final LatencyHistogram PUBLISH = new LatencyHistogram("publish");
+    public static final LatencyHistogram PAINT = new LatencyHistogram("paint");
+
+    public static final List<LatencyHistogram> HISTOGRAMS = List.of(FETCH, PARSE, PROJECT, PUBLISH, PAINT);
+
+    /**
+     * Response bytes as sent over the wire, before decompression
+     */
+    public static final Counter BYTES_RECEIVED = new Counter();
+    public static final Counter POLLS = new Counter();
+    public static final Counter FAILED_POLLS = new Counter();
+    /**
+     * Aircraft being tracked after the last poll
+     */
+    public static final Counter AIRCRAFT = new Counter();
+    /**
+     * Frame ticks that had something to show but were skipped because the last frame hadn't finished
+     */
+    public static final Counter DROPPED_FRAMES = new Counter();
+
+    private static boolean registered = false;
+
+    private static class Counters implements MetricsMXBean {
+
+        @Override
+        public long getBytesReceived() {
+            return BYTES_RECEIVED.get();
+        }
+
+        @Override
+        public long getPolls() {
+            return POLLS.get();
+        }
+
+        @Override
+        public long getFailedPolls() {
+            return FAILED_POLLS.get();
+        }
+
+        @Override
+        public long getAircraft() {
+            return AIRCRAFT.get();
+        }
+
+        @Override
+        public long getDroppedFrames() {
+            return DROPPED_FRAMES.get();
+        }
+
+    }
+
+    /**
+     * Makes every metric visible over JMX. Only registers them the first time it's called.
+     */
+    public static synchronized void registerMBeans() {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Counters(), new ObjectName("lakkie.flight:type=Metrics"));
+            for (LatencyHistogram histogram : HISTOGRAMS) {
+                server.registerMBean(histogram, new ObjectName("lakkie.flight:type=Latency,name=" + histogram.getName()));
+            }
+            registered = true;
+        } catch (JMException e) {
+            System.err.println("Failed to register metrics with JMX!");
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,18 @@
+package lakkie.flight.metrics;
+
+/**
+ * The counters in {@link Metrics}, registered with JMX as lakkie.flight:type=Metrics
+ */
+public interface MetricsMXBean {
+
+    long getBytesReceived();
+
+    long getPolls();
+
+    long getFailedPolls();
+
+    long getAircraft();
+
+    long getDroppedFrames();
+
+}
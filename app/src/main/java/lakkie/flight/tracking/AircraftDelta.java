@@ -0,0 +1,66 @@
+package lakkie.flight.tracking;
+
+import java.util.Arrays;
+
+/**
+ * What changed in an {@link AircraftStore} during one update. Removed aircraft are replaced by the last aircraft in
+ * the store, so the slot they leave behind is reported as changed as well.
+ *
+ * A delta is reused by its store and is only valid until the store's next update.
+ */
+public class AircraftDelta {
+
+    public int added = 0, updated = 0, removed = 0;
+
+    /**
+     * The number of aircraft in the store after the update.
+     */
+    public int size = 0;
+
+    /**
+     * Indices into the store that hold different aircraft or different values than before the update. Every index
+     * at or past the previous size is included. Only the first changedCount entries are valid.
+     */
+    public int[] changed = new int[256];
+    public int changedCount = 0;
+
+    /**
+     * The flight IDs of the aircraft removed. Only the first removed entries are valid.
+     */
+    public String[] removedFlightIds = new String[16];
+
+    void clear() {
+        added = 0;
+        updated = 0;
+        removed = 0;
+        changedCount = 0;
+    }
+
+    void addChanged(int index) {
+        if (changedCount == changed.length) {
+            changed = Arrays.copyOf(changed, changed.length * 2);
+        }
+        changed[changedCount++] = index;
+    }
+
+    void addRemoved(String flightId) {
+        if (removed == removedFlightIds.length) {
+            removedFlightIds = Arrays.copyOf(removedFlightIds, removedFlightIds.length * 2);
+        }
+        removedFlightIds[removed++] = flightId;
+    }
+
+    /**
+     * Whether nothing was added, updated or removed. Removing the last aircraft in the store leaves no slot to refill,
+     * so a delta can have nothing changed and still not be empty.
+     */
+    public boolean isEmpty() {
+        return changedCount == 0 && removed == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("+%d ~%d -%d", added, updated, removed);
+    }
+
+}
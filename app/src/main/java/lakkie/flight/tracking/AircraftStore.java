@@ -0,0 +1,263 @@
+package lakkie.flight.tracking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.MotionModel;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+
+/**
+ * Every aircraft currently being tracked, keyed by the flight ID from the feed. Each update compares a fresh query
+ * against what is already stored and records the difference in an {@link AircraftDelta}, so only aircraft that have
+ * appeared, moved or disappeared get reprojected and passed on to the renderer.
+ *
+ * Queries may cover only part of the world. An aircraft missing from a query is only removed if it was last seen
+ * inside the queried region. Aircraft outside it are kept, so regions queried one after another merge together, and
+ * are dropped once they haven't been seen for OUTSIDE_REGION_TTL_MILLIS.
+ *
+ * Aircraft are kept densely packed in a {@link PlaneColumns}, ready to be published to the map, along with the
+ * velocity and report time the map needs to dead reckon them between polls. This class is not thread safe.
+ */
+public class AircraftStore {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * How long an aircraft outside the queried region is kept without being seen
+     */
+    public static final long OUTSIDE_REGION_TTL_MILLIS = 30_000;
+
+    private final Map<String, Integer> indexByFlightId = new HashMap<>();
+    private final AircraftDelta delta = new AircraftDelta();
+    private final CallsignTable callsigns;
+    private final PlaneColumns columns = new PlaneColumns(DEFAULT_CAPACITY);
+    private int generation = 0;
+    private long nowMillis = 0;
+
+    private String[] flightId = new String[DEFAULT_CAPACITY];
+    /**
+     * The generation of the last update this aircraft was in
+     */
+    private int[] seenGeneration = new int[DEFAULT_CAPACITY];
+    /**
+     * Last reported heading and ground speed, kept to spot changes
+     */
+    private double[] heading = new double[DEFAULT_CAPACITY], speed = new double[DEFAULT_CAPACITY];
+    /**
+     * When this aircraft was last in an update
+     */
+    private long[] seenMillis = new long[DEFAULT_CAPACITY];
+    /**
+     * Set when the values at an index changed and its screen position is out of date
+     */
+    private boolean[] needsProjection = new boolean[DEFAULT_CAPACITY];
+    /**
+     * Set when an index has already been added to the delta
+     */
+    private boolean[] inDelta = new boolean[DEFAULT_CAPACITY];
+    /**
+     * Indices to reproject at the end of an update
+     */
+    private int[] projectIndices = new int[DEFAULT_CAPACITY];
+
+    public AircraftStore(CallsignTable callsigns) {
+        this.callsigns = callsigns;
+    }
+
+    /**
+     * Merges the result of a query for the whole world into the store. Aircraft missing from flights are removed.
+     * @return The changes made. Only valid until the next update.
+     */
+    public AircraftDelta update(FR24AircraftColumns flights, ProjectionConverter projector) {
+        return update(flights, projector, GeoBounds.WORLD, System.currentTimeMillis());
+    }
+
+    /**
+     * Merges the result of a query for one region into the store.
+     * @param region The region that was queried. Aircraft inside it that are missing from flights are removed.
+     * @param nowMillis The current time, used to expire aircraft outside the region
+     * @return The changes made. Only valid until the next update.
+     */
+    public AircraftDelta update(FR24AircraftColumns flights, ProjectionConverter projector, GeoBounds region, long nowMillis) {
+        delta.clear();
+        generation++;
+        this.nowMillis = nowMillis;
+
+        for (int i = 0; i < flights.size; i++) {
+            Integer existing = indexByFlightId.get(flights.flightId[i]);
+            if (existing == null) {
+                int index = columns.size++;
+                ensureCapacity(columns.size);
+                flightId[index] = flights.flightId[i];
+                indexByFlightId.put(flightId[index], index);
+                setValues(index, flights, i, true);
+                markChanged(index);
+                delta.added++;
+            } else if (hasChanged(existing, flights, i)) {
+                setValues(existing, flights, i, false);
+                markChanged(existing);
+                delta.updated++;
+            } else {
+                seenGeneration[existing] = generation;
+                seenMillis[existing] = nowMillis;
+            }
+        }
+
+        removeUnseen(region);
+
+        // Drop indices that were moved past the end, then reproject whatever is left in one batch
+        int kept = 0;
+        int projectCount = 0;
+        for (int i = 0; i < delta.changedCount; i++) {
+            int index = delta.changed[i];
+            inDelta[index] = false;
+            if (index < columns.size) {
+                delta.changed[kept++] = index;
+                if (needsProjection[index]) {
+                    projectIndices[projectCount++] = index;
+                    needsProjection[index] = false;
+                }
+            }
+        }
+        projector.projectToScreen(columns.lat, columns.lng, columns.x, columns.y, projectIndices, projectCount);
+        delta.changedCount = kept;
+        delta.size = columns.size;
+        return delta;
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    /**
+     * The stored aircraft. Only the store may modify them.
+     */
+    public PlaneColumns getColumns() {
+        return columns;
+    }
+
+    public String getFlightId(int index) {
+        return flightId[index];
+    }
+
+    public FR24Aircraft getAircraft(int index) {
+        return new FR24Aircraft(columns.lat[index], columns.lng[index], callsigns.name(columns.callsignId[index]), columns.altitude[index]);
+    }
+
+    /**
+     * Last reported direction of travel in degrees clockwise from north
+     */
+    public double getHeading(int index) {
+        return heading[index];
+    }
+
+    /**
+     * Last reported ground speed in knots
+     */
+    public double getSpeed(int index) {
+        return speed[index];
+    }
+
+    public Point getScreenPosition(int index) {
+        return new Point(columns.x[index], columns.y[index]);
+    }
+
+    /**
+     * @return The index of the flight, or -1 if it isn't being tracked
+     */
+    public int indexOf(String flightId) {
+        Integer index = indexByFlightId.get(flightId);
+        return (index == null) ? -1 : index;
+    }
+
+    private boolean hasChanged(int index, FR24AircraftColumns flights, int flightIndex) {
+        return columns.lat[index] != flights.lat[flightIndex]
+            || columns.lng[index] != flights.lng[flightIndex]
+            || columns.altitude[index] != flights.altitude[flightIndex]
+            || heading[index] != flights.heading[flightIndex]
+            || speed[index] != flights.speed[flightIndex]
+            || !callsigns.name(columns.callsignId[index]).equals(flights.callsign[flightIndex]);
+    }
+
+    private void setValues(int index, FR24AircraftColumns flights, int flightIndex, boolean added) {
+        // Only a new report of where it is resets the dead reckoning, not a new heading or callsign
+        if (added || columns.lat[index] != flights.lat[flightIndex] || columns.lng[index] != flights.lng[flightIndex]) {
+            long reportTime = flights.reportTime[flightIndex];
+            columns.positionTime[index] = (reportTime != 0) ? reportTime : nowMillis;
+        }
+        columns.callsignId[index] = callsigns.intern(flights.callsign[flightIndex]);
+        columns.lat[index] = flights.lat[flightIndex];
+        columns.lng[index] = flights.lng[flightIndex];
+        columns.altitude[index] = flights.altitude[flightIndex];
+        heading[index] = flights.heading[flightIndex];
+        speed[index] = flights.speed[flightIndex];
+        MotionModel.setVelocity(columns, index, heading[index], speed[index]);
+        seenGeneration[index] = generation;
+        seenMillis[index] = nowMillis;
+        needsProjection[index] = true;
+    }
+
+    private void markChanged(int index) {
+        if (!inDelta[index]) {
+            inDelta[index] = true;
+            delta.addChanged(index);
+        }
+    }
+
+    /**
+     * Removes every aircraft that should have been in this update but wasn't, or has expired, by moving the last
+     * aircraft into its place.
+     */
+    private void removeUnseen(GeoBounds region) {
+        int index = 0;
+        while (index < columns.size) {
+            if (seenGeneration[index] == generation
+                    || (!region.contains(columns.lat[index], columns.lng[index])
+                        && nowMillis - seenMillis[index] < OUTSIDE_REGION_TTL_MILLIS)) {
+                index++;
+                continue;
+            }
+
+            indexByFlightId.remove(flightId[index]);
+            delta.addRemoved(flightId[index]);
+            int last = --columns.size;
+            if (index != last) {
+                moveAircraft(last, index);
+                indexByFlightId.put(flightId[index], index);
+                markChanged(index);
+            }
+            flightId[last] = null;
+        }
+    }
+
+    private void moveAircraft(int from, int to) {
+        flightId[to] = flightId[from];
+        columns.move(from, to);
+        seenGeneration[to] = seenGeneration[from];
+        heading[to] = heading[from];
+        speed[to] = speed[from];
+        seenMillis[to] = seenMillis[from];
+        needsProjection[to] = needsProjection[from];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= flightId.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, flightId.length * 2);
+        columns.ensureCapacity(newCapacity);
+        flightId = Arrays.copyOf(flightId, newCapacity);
+        seenGeneration = Arrays.copyOf(seenGeneration, newCapacity);
+        heading = Arrays.copyOf(heading, newCapacity);
+        speed = Arrays.copyOf(speed, newCapacity);
+        seenMillis = Arrays.copyOf(seenMillis, newCapacity);
+        needsProjection = Arrays.copyOf(needsProjection, newCapacity);
+        inDelta = Arrays.copyOf(inDelta, newCapacity);
+        projectIndices = Arrays.copyOf(projectIndices, newCapacity);
+    }
+
+}
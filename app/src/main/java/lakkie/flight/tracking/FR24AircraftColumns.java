@@ -0,0 +1,127 @@
+package lakkie.flight.tracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column-oriented list of aircraft returned by one query of the flight tracker. Each property is held in its own
+ * array and the aircraft at index i is made up of the ith element of every array. The arrays are only ever grown,
+ * so an instance can be cleared and refilled every poll without allocating.
+ */
+public class FR24AircraftColumns {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * The number of aircraft currently held. Elements at or past this index are leftovers from a previous fill.
+     */
+    public int size = 0;
+
+    /**
+     * The key of the flight in the feed. Unlike the callsign this is unique between flights.
+     */
+    public String[] flightId;
+    public String[] callsign;
+    public double[] lat, lng, altitude;
+    /**
+     * Direction of travel in degrees clockwise from north
+     */
+    public double[] heading;
+    /**
+     * Ground speed in knots
+     */
+    public double[] speed;
+    /**
+     * When the flight's position was reported, in epoch milliseconds, or 0 to use the time it's merged into a store
+     */
+    public long[] reportTime;
+
+    public FR24AircraftColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FR24AircraftColumns(int capacity) {
+        flightId = new String[capacity];
+        callsign = new String[capacity];
+        lat = new double[capacity];
+        lng = new double[capacity];
+        altitude = new double[capacity];
+        heading = new double[capacity];
+        speed = new double[capacity];
+        reportTime = new long[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int capacity() {
+        return lat.length;
+    }
+
+    /**
+     * Adds an aircraft that isn't moving.
+     */
+    public void add(String flightId, String callsign, double lat, double lng, double altitude) {
+        add(flightId, callsign, lat, lng, altitude, 0, 0);
+    }
+
+    public void add(String flightId, String callsign, double lat, double lng, double altitude, double heading, double speed) {
+        add(flightId, callsign, lat, lng, altitude, heading, speed, 0);
+    }
+
+    public void add(String flightId, String callsign, double lat, double lng, double altitude, double heading, double speed,
+            long reportTime) {
+        if (size == capacity()) {
+            grow();
+        }
+        this.flightId[size] = flightId;
+        this.callsign[size] = callsign;
+        this.lat[size] = lat;
+        this.lng[size] = lng;
+        this.altitude[size] = altitude;
+        this.heading[size] = heading;
+        this.speed[size] = speed;
+        this.reportTime[size] = reportTime;
+        size++;
+    }
+
+    /**
+     * Sets the report time of every aircraft held, such as when the response they came in arrived.
+     */
+    public void setReportTime(long reportTime) {
+        Arrays.fill(this.reportTime, 0, size, reportTime);
+    }
+
+    public FR24Aircraft get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return new FR24Aircraft(lat[index], lng[index], callsign[index], altitude[index]);
+    }
+
+    /**
+     * Copies every aircraft into a new list of records.
+     */
+    public List<FR24Aircraft> toList() {
+        List<FR24Aircraft> aircraft = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            aircraft.add(get(i));
+        }
+        return aircraft;
+    }
+
+    private void grow() {
+        int newCapacity = Math.max(DEFAULT_CAPACITY, capacity() * 2);
+        flightId = Arrays.copyOf(flightId, newCapacity);
+        callsign = Arrays.copyOf(callsign, newCapacity);
+        lat = Arrays.copyOf(lat, newCapacity);
+        lng = Arrays.copyOf(lng, newCapacity);
+        altitude = Arrays.copyOf(altitude, newCapacity);
+        heading = Arrays.copyOf(heading, newCapacity);
+        speed = Arrays.copyOf(speed, newCapacity);
+        reportTime = Arrays.copyOf(reportTime, newCapacity);
+    }
+
+}
@@ -0,0 +1,366 @@
+package lakkie.flight.tracking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming decoder for the flight list returned by the tracker server. The body is read straight from the stream
+ * into a fixed buffer and every flight is written into a {@link FR24AircraftColumns} as soon as it has been read, so
+ * no JSON tree is ever built. Properties we don't use are skipped without being decoded.
+ *
+ * The read buffer and string pool are kept between calls, so one parser should be reused for every poll. Parsers
+ * are not thread safe.
+ */
+public class FR24FeedParser {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Indices of the properties we read out of each flight's property array.
+     */
+    private static final int PROP_CALLSIGN = 0, PROP_LAT = 1, PROP_LNG = 2, PROP_HEADING = 3, PROP_ALTITUDE = 4,
+        PROP_SPEED = 5;
+
+    /**
+     * Mantissas up to 2^53 and powers of ten up to 10^22 are exact doubles, so a single multiply or divide of the two
+     * is correctly rounded.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position = 0, limit = 0;
+    private InputStream input;
+
+    /**
+     * Holds strings that cross the end of the buffer or contain escapes, and the text of each number.
+     */
+    private byte[] scratch = new byte[64];
+    private int scratchLength = 0;
+
+    private final FR24StringPool strings = new FR24StringPool();
+
+    /**
+     * Reads a whole flight list from input into flights. Anything already in flights is cleared first. The stream is
+     * not closed.
+     * @return The number of flights read
+     */
+    public int parse(InputStream input, FR24AircraftColumns flights) throws IOException {
+        this.input = input;
+        position = 0;
+        limit = 0;
+        flights.clear();
+        try {
+            expect('{');
+            if (nextNonWhitespace() == '}') {
+                return 0;
+            }
+            position--;
+
+            do {
+                String flightId = readString("flight ID");
+                expect(':');
+                int next = nextNonWhitespace();
+                if (next != '[') {
+                    throw new IOException("Got unexpected object type in flight list. Expected: array, got: " + describe(next));
+                }
+                readFlight(flightId, flights);
+            } while (nextSeparator('}'));
+        } finally {
+            this.input = null;
+        }
+        return flights.size;
+    }
+
+    /**
+     * Reads the properties of one flight. The opening bracket has already been consumed.
+     */
+    private void readFlight(String flightId, FR24AircraftColumns flights) throws IOException {
+        String callsign = null;
+        double lat = 0, lng = 0, heading = 0, altitude = 0, speed = 0;
+        int propIndex = 0;
+
+        if (nextNonWhitespace() != ']') {
+            position--;
+            do {
+                switch (propIndex) {
+                    case PROP_CALLSIGN -> callsign = readString("callsign");
+                    case PROP_LAT -> lat = readNumber("latitude");
+                    case PROP_LNG -> lng = readNumber("longitude");
+                    case PROP_HEADING -> heading = readNumber("heading");
+                    case PROP_ALTITUDE -> altitude = readNumber("altitude");
+                    case PROP_SPEED -> speed = readNumber("ground speed");
+                    default -> skipValue();
+                }
+                propIndex++;
+            } while (nextSeparator(']'));
+        }
+
+        if (propIndex <= PROP_ALTITUDE) {
+            throw new IOException(String.format("Flight %s only has %d properties. Expected at least %d",
+                flightId, propIndex, PROP_ALTITUDE + 1));
+        }
+        flights.add(flightId, callsign, lat, lng, altitude, heading, speed);
+    }
+
+    private String readString(String name) throws IOException {
+        int next = nextNonWhitespace();
+        if (next != '"') {
+            throw new IOException(String.format("Got unexpected %s type in flight. Expected: String, got: %s", name, describe(next)));
+        }
+
+        // Fast path: the whole string is in the buffer and has no escapes, so intern it straight from the buffer
+        for (int i = position; i < limit; i++) {
+            if (buffer[i] == '"') {
+                String value = strings.intern(buffer, position, i - position);
+                position = i + 1;
+                return value;
+            } else if (buffer[i] == '\\') {
+                break;
+            }
+        }
+
+        scratchLength = 0;
+        while (true) {
+            int b = readRequired();
+            if (b == '"') {
+                return strings.intern(scratch, 0, scratchLength);
+            } else if (b == '\\') {
+                readEscape();
+            } else {
+                appendScratch(b);
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int b = readRequired();
+        switch (b) {
+            case 'b' -> appendScratch('\b');
+            case 'f' -> appendScratch('\f');
+            case 'n' -> appendScratch('\n');
+            case 'r' -> appendScratch('\r');
+            case 't' -> appendScratch('\t');
+            case 'u' -> {
+                int codePoint = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(readRequired(), 16);
+                    if (digit < 0) {
+                        throw new IOException("Invalid unicode escape in flight list");
+                    }
+                    codePoint = (codePoint << 4) | digit;
+                }
+                for (byte encoded : String.valueOf((char) codePoint).getBytes(StandardCharsets.UTF_8)) {
+                    appendScratch(encoded);
+                }
+            }
+            default -> appendScratch(b);
+        }
+    }
+
+    private double readNumber(String name) throws IOException {
+        int b = nextNonWhitespace();
+        if (b != '-' && !isDigit(b)) {
+            throw new IOException(String.format("Got unexpected %s type on flight. Expected: number type, got: %s", name, describe(b)));
+        }
+
+        scratchLength = 0;
+        boolean negative = false;
+        boolean truncated = false;
+        long mantissa = 0;
+        int significantDigits = 0;
+        int exponent = 0;
+
+        if (b == '-') {
+            negative = true;
+            appendScratch(b);
+            b = read();
+        }
+        while (isDigit(b)) {
+            if (significantDigits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+            } else {
+                truncated = true;
+                exponent++;
+            }
+            appendScratch(b);
+            b = read();
+        }
+        if (b == '.') {
+            appendScratch(b);
+            b = read();
+            while (isDigit(b)) {
+                if (significantDigits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        significantDigits++;
+                    }
+                    exponent--;
+                } else {
+                    truncated = true;
+                }
+                appendScratch(b);
+                b = read();
+            }
+        }
+        if (b == 'e' || b == 'E') {
+            appendScratch(b);
+            b = read();
+            int exponentSign = 1;
+            if (b == '-' || b == '+') {
+                exponentSign = (b == '-') ? -1 : 1;
+                appendScratch(b);
+                b = read();
+            }
+            int explicitExponent = 0;
+            while (isDigit(b)) {
+                explicitExponent = Math.min(explicitExponent * 10 + (b - '0'), 10_000);
+                appendScratch(b);
+                b = read();
+            }
+            exponent += exponentSign * explicitExponent;
+        }
+        if (b != -1) {
+            position--;
+        }
+
+        if (truncated || mantissa > MAX_EXACT_MANTISSA || Math.abs(exponent) >= POWERS_OF_TEN.length) {
+            // Rare enough that it's fine to fall back to the allocating JDK parser
+            try {
+                return Double.parseDouble(new String(scratch, 0, scratchLength, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid " + name + " in flight list", e);
+            }
+        }
+        double value = (exponent < 0) ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private void skipValue() throws IOException {
+        int b = nextNonWhitespace();
+        if (b == '"') {
+            skipStringBody();
+        } else if (b == '[' || b == '{') {
+            int depth = 1;
+            while (depth > 0) {
+                b = readRequired();
+                if (b == '"') {
+                    skipStringBody();
+                } else if (b == '[' || b == '{') {
+                    depth++;
+                } else if (b == ']' || b == '}') {
+                    depth--;
+                }
+            }
+        } else {
+            // Number, true, false or null
+            while (b != -1 && b != ',' && b != ']' && b != '}' && !isWhitespace(b)) {
+                b = read();
+            }
+            if (b != -1) {
+                position--;
+            }
+        }
+    }
+
+    private void skipStringBody() throws IOException {
+        while (true) {
+            int b = readRequired();
+            if (b == '\\') {
+                readRequired();
+            } else if (b == '"') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Consumes the separator after a value.
+     * @return true if another value follows, false if the closing character was reached
+     */
+    private boolean nextSeparator(char close) throws IOException {
+        int b = nextNonWhitespace();
+        if (b == ',') {
+            return true;
+        } else if (b == close) {
+            return false;
+        }
+        throw new IOException(String.format("Expected ',' or '%c' in flight list, got: %s", close, describe(b)));
+    }
+
+    private void expect(char expected) throws IOException {
+        int b = nextNonWhitespace();
+        if (b != expected) {
+            throw new IOException(String.format("Expected '%c' in flight list, got: %s", expected, describe(b)));
+        }
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int b;
+        do {
+            b = readRequired();
+        } while (isWhitespace(b));
+        return b;
+    }
+
+    private int readRequired() throws IOException {
+        int b = read();
+        if (b == -1) {
+            throw new IOException("Unexpected end of flight list");
+        }
+        return b;
+    }
+
+    /**
+     * @return The next byte, or -1 at the end of the stream. The byte can be pushed back with position--.
+     */
+    private int read() throws IOException {
+        if (position == limit) {
+            int read = input.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                position = 0;
+                limit = 0;
+                return -1;
+            }
+            position = 0;
+            limit = read;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private void appendScratch(int b) {
+        if (scratchLength == scratch.length) {
+            byte[] grown = new byte[scratch.length * 2];
+            System.arraycopy(scratch, 0, grown, 0, scratchLength);
+            scratch = grown;
+        }
+        scratch[scratchLength++] = (byte) b;
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static String describe(int b) {
+        return switch (b) {
+            case '"' -> "String";
+            case '[' -> "array";
+            case '{' -> "object";
+            case 't', 'f' -> "Boolean";
+            case 'n' -> "null";
+            default -> (b == '-' || isDigit(b)) ? "Number" : "'" + (char) b + "'";
+        };
+    }
+
+}
@@ -0,0 +1,31 @@
+package lakkie.flight.tracking;
+
+import lakkie.flight.globepanel.GeoBounds;
+
+/**
+ * One query to the tracker server along with the parser and columns its response is read into. Keep the same query
+ * between polls so the parser's buffers and the columns get reused.
+ * @param source The server to query with %d being the placeholder for the current time.
+ * @param bounds The region to ask for, sent as a bounds parameter, or null for the whole world.
+ */
+public record FR24Query(String source, GeoBounds bounds, FR24FeedParser parser, FR24AircraftColumns flights) {
+
+    public static FR24Query create(String source) {
+        return new FR24Query(source, null, new FR24FeedParser(), new FR24AircraftColumns());
+    }
+
+    /**
+     * Creates a query to a different source that reads into the same parser and columns.
+     */
+    public FR24Query withSource(String newSource) {
+        return new FR24Query(newSource, bounds, parser, flights);
+    }
+
+    /**
+     * Creates a query for a different region that reads into the same parser and columns.
+     */
+    public FR24Query withBounds(GeoBounds newBounds) {
+        return new FR24Query(source, newBounds, parser, flights);
+    }
+
+}
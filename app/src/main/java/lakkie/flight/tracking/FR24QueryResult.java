@@ -0,0 +1,17 @@
+package lakkie.flight.tracking;
+
+import java.net.http.HttpClient.Version;
+
+/**
+ * Timing and size of a completed {@link FR24Query}. The flights themselves are in query.flights().
+ * @param bytesReceived Size of the response body as sent over the wire, before decompression
+ * @param latencyNanos Time from sending the request until the whole body was parsed
+ * @param version The HTTP version the server answered with
+ */
+public record FR24QueryResult(FR24Query query, int flightCount, long bytesReceived, long latencyNanos, Version version) {
+
+    public long latencyMillis() {
+        return latencyNanos / 1_000_000L;
+    }
+
+}
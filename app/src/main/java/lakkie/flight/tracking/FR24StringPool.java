@@ -0,0 +1,91 @@
+package lakkie.flight.tracking;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maps raw UTF-8 bytes to String instances so that the same flight ID or callsign read on consecutive polls
+ * reuses one String instead of decoding a new one every time.
+ */
+class FR24StringPool {
+
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    /**
+     * Once this many strings are pooled the pool is emptied, so flights that have landed don't stay in memory forever.
+     */
+    private static final int MAX_ENTRIES = 1 << 17;
+
+    private byte[][] keys = new byte[INITIAL_CAPACITY][];
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int entries = 0;
+
+    public String intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash
+                    && Arrays.equals(keys[slot], 0, keys[slot].length, bytes, offset, offset + length)) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        String value = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        if (entries >= MAX_ENTRIES) {
+            clear();
+        } else if (entries * 2 >= keys.length) {
+            resize();
+        }
+        insert(Arrays.copyOfRange(bytes, offset, offset + length), value, hash);
+        return value;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        entries = 0;
+    }
+
+    private void insert(byte[] key, String value, int hash) {
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        entries++;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        entries = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                insert(oldKeys[i], oldValues[i], oldHashes[i]);
+            }
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // Spread the high bits down since we index with the low bits
+        return hash ^ (hash >>> 16);
+    }
+
+}
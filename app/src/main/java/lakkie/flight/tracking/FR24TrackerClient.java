@@ -0,0 +1,179 @@
+package lakkie.flight.tracking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.metrics.Metrics;
+
+/**
+ * Long-lived connection to the flight tracker server. A single HttpClient is kept for the lifetime of this object so
+ * connections, TLS sessions and worker threads are reused between polls. HTTP/2 is used when the server offers it,
+ * and responses may be gzip or deflate compressed.
+ *
+ * Queries are sent with HttpClient.sendAsync, so several regions can be in flight at once. Each in-flight query must
+ * have its own {@link FR24Query} because parsers and columns are not thread safe.
+ */
+public class FR24TrackerClient implements AutoCloseable {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    public FR24TrackerClient() {
+        this(Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "FR24 Client " + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * @param executor Runs the HTTP client and parses responses. It is shut down when the client is closed.
+     */
+    public FR24TrackerClient(ExecutorService executor) {
+        this.executor = executor;
+        client = HttpClient.newBuilder()
+            .version(Version.HTTP_2)
+            .followRedirects(Redirect.NEVER)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .executor(executor)
+            .build();
+    }
+
+    /**
+     * Sends a query without blocking. The response is parsed into query.flights() on one of the client's threads.
+     */
+    public CompletableFuture<FR24QueryResult> queryAsync(FR24Query query) {
+        String formattedSource = formatSource(query, System.currentTimeMillis() / 1000L);
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(formattedSource))
+            .timeout(REQUEST_TIMEOUT)
+            .header("Accept-Encoding", "gzip, deflate")
+            .build();
+
+        long sentTime = System.nanoTime();
+        return client.sendAsync(request, BodyHandlers.ofInputStream())
+            .thenApplyAsync(response -> {
+                try {
+                    return readResponse(query, formattedSource, response, sentTime);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor);
+    }
+
+    /**
+     * Sends every query at once.
+     * @return A future that completes once every query has, or fails with the first query that fails
+     */
+    public CompletableFuture<List<FR24QueryResult>> queryAll(List<FR24Query> queries) {
+        List<CompletableFuture<FR24QueryResult>> pending = queries.stream().map(this::queryAsync).toList();
+        return CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+            .thenApply(unused -> pending.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Sends a query and waits for its response to be parsed.
+     */
+    public FR24QueryResult query(FR24Query query) throws IOException, InterruptedException {
+        CompletableFuture<FR24QueryResult> result = queryAsync(query);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw unwrapFailure(e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        client.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Recovers the IOException that failed a query from the exception a future completed with.
+     */
+    public static IOException unwrapFailure(Throwable failure) {
+        while (failure.getCause() != null && !(failure instanceof IOException)) {
+            failure = failure.getCause();
+        }
+        return (failure instanceof IOException e) ? e : new IOException("Tracker query failed", failure);
+    }
+
+    /**
+     * Fills in the time and appends the region, if there is one, as bounds=north,south,west,east.
+     */
+    static String formatSource(FR24Query query, long currentTimeSec) {
+        String formattedSource = String.format(query.source(), currentTimeSec);
+        GeoBounds bounds = query.bounds();
+        if (bounds == null) {
+            return formattedSource;
+        }
+        return formattedSource + (formattedSource.contains("?") ? '&' : '?') + String.format(Locale.ROOT,
+            "bounds=%.3f,%.3f,%.3f,%.3f", bounds.maxLat(), bounds.minLat(), bounds.minLng(), bounds.maxLng());
+    }
+
+    private static FR24QueryResult readResponse(FR24Query query, String formattedSource, HttpResponse<InputStream> response, long sentTime) throws IOException {
+        Metrics.FETCH.recordSince(sentTime);
+        long receivedMillis = System.currentTimeMillis();
+        CountingInputStream wireBody = new CountingInputStream(response.body());
+        try (wireBody) {
+            if (response.statusCode() != 200) {
+                // Unexpected response code
+                throw new IOException(String.format("Query from %s returned unexpected code: %d", formattedSource, response.statusCode()));
+            }
+            InputStream body = decode(wireBody, response.headers().firstValue("Content-Encoding").orElse("identity"));
+            long parseStart = System.nanoTime();
+            int flightCount = query.parser().parse(body, query.flights());
+            // A response may be used a poll after it arrived, so dead reckoning needs to know when it really did
+            query.flights().setReportTime(receivedMillis);
+            Metrics.PARSE.recordSince(parseStart);
+            // Read whatever trails the flight list so the connection can go back into the pool
+            body.transferTo(OutputStream.nullOutputStream());
+            wireBody.transferTo(OutputStream.nullOutputStream());
+            Metrics.BYTES_RECEIVED.add(wireBody.getCount());
+            return new FR24QueryResult(query, flightCount, wireBody.getCount(), System.nanoTime() - sentTime, response.version());
+        }
+    }
+
+    private static InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        return switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body, 8192);
+            case "deflate" -> new InflaterInputStream(body);
+            case "identity" -> body;
+            default -> throw new IOException("Unsupported content encoding from tracker server: " + contentEncoding);
+        };
+    }
+
+}
@@ -4,14 +4,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpClient.Redirect;
-import java.net.http.HttpClient.Version;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.time.Duration;
 
 import ca.fuzzlesoft.JsonParse;
 
@@ -19,30 +11,43 @@ public class FR24TrackerResults {
 
     private FR24TrackerResults() { }
 
+    private static class SharedClientHolder {
+        private static final FR24TrackerClient CLIENT = new FR24TrackerClient();
+    }
+
     /**
      * Synchronously queries the flight tracker server for the tracked flights at the time this function was called.
      * @param source The server to query with %d being the placeholder for the current time.
      * @return
      */
     public static List<FR24Aircraft> queryTracker(String source) throws IOException, InterruptedException {
-        long currentTimeSec = System.currentTimeMillis() / 1000L;
-        String formattedSource = String.format(source, currentTimeSec);
-        HttpClient client = HttpClient.newBuilder()
-            .version(Version.HTTP_1_1)
-            .followRedirects(Redirect.NEVER)
-            .connectTimeout(Duration.ofSeconds(5))
-            .build();
-        
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create(formattedSource))
-            .build();
-        HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-            // Unexpected response code
-            throw new IOException(String.format("Query from %s returned unexpected code: %d", formattedSource, response.statusCode()));
-        }
-        
-        String flightList = response.body();
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        queryTracker(source, new FR24FeedParser(), flights);
+        return flights.toList();
+    }
+
+    /**
+     * Synchronously queries the flight tracker server and streams the response straight into flights, replacing
+     * whatever it held. Reusing the same parser and columns between calls keeps each poll almost allocation free.
+     * @param source The server to query with %d being the placeholder for the current time.
+     * @return The number of flights read
+     */
+    public static int queryTracker(String source, FR24FeedParser parser, FR24AircraftColumns flights) throws IOException, InterruptedException {
+        return sharedClient().query(new FR24Query(source, null, parser, flights)).flightCount();
+    }
+
+    /**
+     * The client used by queryTracker. It lives for the whole program so connections are reused between queries.
+     */
+    public static FR24TrackerClient sharedClient() {
+        return SharedClientHolder.CLIENT;
+    }
+
+    /**
+     * Parses a flight list by building the whole JSON tree first. This was how queryTracker used to read responses
+     * and is only kept as a reference for {@link FR24FeedParser} in tests and benchmarks.
+     */
+    public static List<FR24Aircraft> parseFlightList(String flightList) throws IOException {
         // We only need the values because the key is the callsign, which is the value at index 0.
         Collection<Object> flights = JsonParse.map(flightList).values();
         List<FR24Aircraft> parsedFlights = new ArrayList<>();
@@ -2,40 +2,449 @@ package lakkie.flight.tracking;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
-import javax.swing.SwingUtilities;
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.metrics.Metrics;
 
-import lakkie.flight.globepanel.GlobePanel;
-import lakkie.flight.globepanel.ProjectionConverter.Point;
+/**
+ * Polls the tracker server on a single scheduler thread and publishes what it finds. Only the region being viewed is
+ * queried, at an interval that depends on how big that region is.
+ *
+ * Polls run at a fixed rate, counted from when the last poll started, so slow responses don't stretch the cadence.
+ * When a poll fails the tracker backs off exponentially with jitter, and the last aircraft published stay on the map
+ * until a poll succeeds again.
+ *
+ * The queried region can be split into shards, which are fetched at the same time on virtual threads and merged into
+ * one update, so one slow response no longer holds up the whole region. Each poll waits for its shards until a
+ * deadline. A shard that misses it keeps the aircraft last seen inside it, and its response is used by the next poll
+ * instead of sending another.
+ *
+ * If given a {@link TrackStore}, every aircraft that changes is recorded to it, along with every aircraft tracked once
+ * every KEYFRAME_INTERVAL_MS so that a recording can be replayed from any point.
+ */
+public class FR24TrackerThread implements AutoCloseable {
 
-public class FR24TrackerThread {
-    
-    public static void trackAircraft(GlobePanel updateMap) {
-        while (true) {
+    /**
+     * How often the viewport is checked for changes
+     */
+    private static final long TICK_MS = 50L;
+    /**
+     * How long the view has to stay still before a new region is queried, so panning and zooming don't send a query
+     * for every frame
+     */
+    private static final long VIEW_SETTLE_MS = 250L;
+    public static final long MAX_BACKOFF_MS = 60_000L;
+    /**
+     * How much further than the view to query on each side, as a fraction of the view's size, so small pans stay
+     * inside the queried region
+     */
+    private static final double QUERY_MARGIN = 0.25;
+    /**
+     * Requery once the queried region is this many times bigger than it needs to be, such as after zooming in
+     */
+    private static final double MAX_QUERY_AREA_RATIO = 4;
+    /**
+     * How often every aircraft is recorded, rather than just the ones that changed
+     */
+    public static final long KEYFRAME_INTERVAL_MS = 60_000L;
+
+    private final FR24TrackerClient client;
+    private final ProjectionConverter projector;
+    private final PlaneBuffer planes;
+    private final Supplier<GeoBounds> viewport;
+    private final Runnable onUpdate;
+    private final AircraftStore store;
+    private final ScheduledExecutorService scheduler;
+    /**
+     * Sends the query for each shard
+     */
+    private final ExecutorService shardExecutor;
+    private final String source;
+    private volatile ToLongFunction<GeoBounds> pollInterval = FR24TrackerThread::defaultPollInterval;
+    private volatile TrackStore history = null;
+    private volatile int latShards = 1, lngShards = 1;
+    private volatile long cycleDeadlineMillis = Long.MAX_VALUE;
+
+    // Only touched on the scheduler thread
+    private List<Shard> shards = List.of();
+    private int shardedLat = 0, shardedLng = 0;
+    /**
+     * Every shard's flights in one list, reused between polls
+     */
+    private final FR24AircraftColumns merged = new FR24AircraftColumns();
+    private final Set<String> mergedIds = new HashSet<>();
+    private final List<Shard> lateShards = new ArrayList<>();
+    private GeoBounds queried = null;
+    private GeoBounds lastVisible = null;
+    private long viewChangedAt = 0;
+    private long nextPollAt = 0;
+    private long lastKeyframeAt = 0;
+    private TrackStore lastHistory = null;
+
+    private volatile int consecutiveFailures = 0;
+
+    /**
+     * @param source The server to query with %d being the placeholder for the current time.
+     * @param viewport The region being viewed. Called from the scheduler thread.
+     * @param onUpdate Called from the scheduler thread after aircraft have changed
+     */
+    public FR24TrackerThread(String source, FR24TrackerClient client, ProjectionConverter projector, PlaneBuffer planes,
+            Supplier<GeoBounds> viewport, Runnable onUpdate) {
+        this.client = client;
+        this.projector = projector;
+        this.planes = planes;
+        this.viewport = viewport;
+        this.onUpdate = onUpdate;
+        this.source = source;
+        this.store = new AircraftStore(planes.getCallsigns());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Track Aircraft");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shardExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("Track Shard ", 1).factory());
+    }
+
+    /**
+     * Starts polling in the background.
+     */
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Changes how often a region is polled.
+     * @param pollInterval Gives the milliseconds between polls of a region
+     */
+    public void setPollInterval(ToLongFunction<GeoBounds> pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Splits the queried region into a grid of shards that are fetched at the same time. Takes effect on the next poll.
+     */
+    public void setShards(int latShards, int lngShards) {
+        if (latShards < 1 || lngShards < 1) {
+            throw new IllegalArgumentException(String.format("Can't split into %dx%d shards", latShards, lngShards));
+        }
+        this.latShards = latShards;
+        this.lngShards = lngShards;
+    }
+
+    /**
+     * Sets the longest a poll waits for its shards. Polls never wait longer than the poll interval.
+     */
+    public void setCycleDeadline(long cycleDeadlineMillis) {
+        this.cycleDeadlineMillis = cycleDeadlineMillis;
+    }
+
+    /**
+     * Records every poll to a track store from now on, or stops recording if null. The store is not closed by the
+     * tracker.
+     */
+    public void setHistory(TrackStore history) {
+        this.history = history;
+    }
+
+    /**
+     * Polls regions covering more of the world less often, since each poll is bigger and aircraft move fewer pixels
+     * between polls when zoomed out.
+     */
+    public static long defaultPollInterval(GeoBounds region) {
+        double worldFraction = region.area() / GeoBounds.WORLD.area();
+        if (worldFraction >= 0.25) {
+            return 5000L;
+        } else if (worldFraction >= 0.01) {
+            return 2000L;
+        }
+        return 1000L;
+    }
+
+    /**
+     * The number of polls that have failed since the last one that succeeded
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * Stops polling, interrupting a poll in progress, and waits for the scheduler thread to finish.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            // Shards are only sent from the scheduler thread, so once it's stopped no more can be
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+            shardExecutor.shutdownNow();
+            shardExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            shardExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            GeoBounds visible = viewport.get();
+            if (!visible.equals(lastVisible)) {
+                lastVisible = visible;
+                viewChangedAt = now;
+            }
+
+            GeoBounds wanted = visible.padded(QUERY_MARGIN);
+            boolean regionStale = queried == null || !queried.contains(visible)
+                || queried.area() > wanted.area() * MAX_QUERY_AREA_RATIO;
+            boolean viewSettled = now - viewChangedAt >= VIEW_SETTLE_MS;
+            // Don't let a new region skip the backoff
+            boolean newRegionDue = regionStale && viewSettled && consecutiveFailures == 0;
+            if (now < nextPollAt && !newRegionDue) {
+                return;
+            }
+            if (regionStale) {
+                queried = wanted;
+            }
+            if (regionStale || shardedLat != latShards || shardedLng != lngShards) {
+                createShards();
+            }
+
+            poll(now);
+        } catch (InterruptedException e) {
+            // Shutting down
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Anything thrown here would stop the scheduler running tick again
+            System.err.println("Unexpected error while tracking flights!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Splits the queried region into new shards. Each shard has its own query, so that responses can be parsed at the
+     * same time, and reuses it every poll so that reading the response doesn't allocate.
+     */
+    private void createShards() {
+        for (Shard shard : shards) {
+            if (shard.pending != null) {
+                shard.pending.cancel(true);
+            }
+        }
+        shardedLat = latShards;
+        shardedLng = lngShards;
+        List<Shard> newShards = new ArrayList<>();
+        for (GeoBounds bounds : queried.split(shardedLat, shardedLng)) {
+            newShards.add(new Shard(FR24Query.create(source).withBounds(bounds)));
+        }
+        shards = newShards;
+    }
+
+    private void poll(long startTime) throws InterruptedException {
+        long interval = pollInterval.applyAsLong(queried);
+        long deadline = startTime + Math.min(interval, cycleDeadlineMillis);
+        for (Shard shard : shards) {
+            // A shard still waiting on last poll's response isn't sent again
+            if (shard.pending == null) {
+                shard.pending = shardExecutor.submit(() -> client.query(shard.query));
+            }
+        }
+
+        // Gather every shard that answers in time. With one shard its flights are used as they are.
+        boolean merging = shards.size() > 1;
+        if (merging) {
+            merged.clear();
+            mergedIds.clear();
+        }
+        lateShards.clear();
+        FR24AircraftColumns flights = null;
+        IOException failure = null;
+        long bytesReceived = 0, slowestMillis = 0;
+        for (Shard shard : shards) {
             try {
-                List<FR24Aircraft> results = FR24TrackerResults.queryTracker(System.getProperty("FR24_SERVER_URL"));
-                List<Point> projectedTrackedFlights = new ArrayList<>();
-                for(FR24Aircraft aircraft : results) {
-                    projectedTrackedFlights.add(updateMap.projector.projectToScreen(aircraft.lat(), aircraft.lng()));
+                FR24QueryResult result = shard.pending.get(Math.max(0, deadline - System.currentTimeMillis()),
+                    TimeUnit.MILLISECONDS);
+                shard.pending = null;
+                bytesReceived += result.bytesReceived();
+                slowestMillis = Math.max(slowestMillis, result.latencyMillis());
+                flights = shard.query.flights();
+                if (merging) {
+                    mergeFlights(flights);
                 }
+            } catch (TimeoutException e) {
+                lateShards.add(shard);
+            } catch (ExecutionException e) {
+                shard.pending = null;
+                failure = FR24TrackerClient.unwrapFailure(e.getCause());
+                lateShards.add(shard);
+            }
+        }
 
-                System.out.printf("Fetched %d flights\n", projectedTrackedFlights.size());
+        int freshShards = shards.size() - lateShards.size();
+        if (freshShards == 0) {
+            if (failure != null) {
+                pollFailed(failure);
+            } else {
+                System.out.printf("No response for %s within %dms, keeping the last flights\n", queried, deadline - startTime);
+                nextPollAt = startTime + interval;
+            }
+            return;
+        }
+        if (merging) {
+            carryForward(lateShards);
+            flights = merged;
+        }
+        long projectStart = System.nanoTime();
+        AircraftDelta delta = store.update(flights, projector, queried, startTime);
+        Metrics.PROJECT.recordSince(projectStart);
+        Metrics.POLLS.increment();
+        Metrics.AIRCRAFT.set(delta.size);
 
-                synchronized (updateMap.planeLock) {
-                    updateMap.planePositions = projectedTrackedFlights;
-                    updateMap.planeInfo = results;
-                    updateMap.planeLastUpdate = System.currentTimeMillis();
-                }
+        if (consecutiveFailures > 0) {
+            System.out.printf("Fetching tracked flights recovered after %d failures\n", consecutiveFailures);
+            consecutiveFailures = 0;
+        }
+        if (failure != null) {
+            System.err.printf("Failed to fetch part of %s, keeping its last flights: %s\n", queried, failure);
+        }
+        System.out.printf("Fetched %d flights (%d KiB) in %dms for %s, %s%s\n", flights.size, bytesReceived / 1024,
+            slowestMillis, queried, delta,
+            merging ? String.format(", %d/%d shards on time", freshShards, shards.size()) : "");
 
-                SwingUtilities.invokeLater(updateMap::repaint);
+        TrackStore currentHistory = history;
+        if (currentHistory != null) {
+            record(currentHistory, delta, startTime);
+        }
 
-                Thread.sleep(1000L);
-            } catch (IOException | InterruptedException e) {
-                System.err.println("Failed to fetch tracked flights!");
-                e.printStackTrace();
+        long publishStart = System.nanoTime();
+        planes.publish(store.getColumns(), delta.changed, delta.changedCount);
+        Metrics.PUBLISH.recordSince(publishStart);
+        if (!delta.isEmpty()) {
+            onUpdate.run();
+        }
+        nextPollAt = startTime + interval;
+    }
+
+    private void pollFailed(IOException e) {
+        Metrics.FAILED_POLLS.increment();
+        // Keep showing the last aircraft that were fetched
+        int failures = ++consecutiveFailures;
+        long backoff = backoffMillis(pollInterval.applyAsLong(queried), failures);
+        nextPollAt = System.currentTimeMillis() + backoff;
+        System.err.printf("Failed to fetch tracked flights (%d in a row), retrying in %dms: %s\n", failures, backoff, e);
+        if (failures == 1) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Adds a shard's flights to the merged list. Shards share their edges, so an aircraft may be in two of them.
+     */
+    private void mergeFlights(FR24AircraftColumns flights) {
+        for (int i = 0; i < flights.size; i++) {
+            if (mergedIds.add(flights.flightId[i])) {
+                merged.add(flights.flightId[i], flights.callsign[i], flights.lat[i], flights.lng[i],
+                    flights.altitude[i], flights.heading[i], flights.speed[i], flights.reportTime[i]);
             }
         }
     }
 
+    /**
+     * Adds the aircraft last seen inside shards that didn't answer, so they aren't removed for being missing
+     */
+    private void carryForward(List<Shard> late) {
+        if (late.isEmpty()) {
+            return;
+        }
+        PlaneColumns columns = store.getColumns();
+        CallsignTable callsigns = planes.getCallsigns();
+        for (int i = 0; i < columns.size; i++) {
+            String flightId = store.getFlightId(i);
+            if (mergedIds.contains(flightId)) {
+                continue;
+            }
+            for (Shard shard : late) {
+                if (shard.query.bounds().contains(columns.lat[i], columns.lng[i])) {
+                    mergedIds.add(flightId);
+                    merged.add(flightId, callsigns.name(columns.callsignId[i]), columns.lat[i], columns.lng[i],
+                        columns.altitude[i], store.getHeading(i), store.getSpeed(i), columns.positionTime[i]);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends what changed in a poll to the track store. A failure to record is reported but doesn't fail the poll.
+     */
+    private void record(TrackStore history, AircraftDelta delta, long time) {
+        try {
+            PlaneColumns columns = store.getColumns();
+            // A new store starts with a keyframe
+            if (history != lastHistory || time - lastKeyframeAt >= KEYFRAME_INTERVAL_MS) {
+                lastHistory = history;
+                lastKeyframeAt = time;
+                for (int i = 0; i < columns.size; i++) {
+                    recordAircraft(history, columns, i, time);
+                }
+            } else {
+                for (int k = 0; k < delta.changedCount; k++) {
+                    recordAircraft(history, columns, delta.changed[k], time);
+                }
+            }
+            for (int k = 0; k < delta.removed; k++) {
+                history.append(time, delta.removedFlightIds[k], "", 0, 0, 0, 0, 0, true);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to record flight history!");
+            e.printStackTrace();
+        }
+    }
+
+    private void recordAircraft(TrackStore history, PlaneColumns columns, int index, long time) throws IOException {
+        history.append(time, store.getFlightId(index), planes.getCallsigns().name(columns.callsignId[index]),
+            columns.lat[index], columns.lng[index], columns.altitude[index], store.getHeading(index),
+            store.getSpeed(index), false);
+    }
+
+    /**
+     * One part of the queried region and the response it's waiting for, if any
+     */
+    private static class Shard {
+
+        final FR24Query query;
+        Future<FR24QueryResult> pending = null;
+
+        Shard(FR24Query query) {
+            this.query = query;
+        }
+
+    }
+
+    /**
+     * Doubles the wait for each failure in a row, then picks a random point in the upper half of it so clients that
+     * failed together don't retry together.
+     */
+    static long backoffMillis(long interval, int failures) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, interval << Math.min(failures, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
 }
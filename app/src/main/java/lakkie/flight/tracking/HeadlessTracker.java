@@ -0,0 +1,282 @@
+package lakkie.flight.tracking;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.metrics.Metrics;
+
+/**
+ * Runs the tracking pipeline of fetch, parse, project and store without a map, so nothing touches AWT. The world is
+ * split into regions, each polled by its own worker on a virtual thread with its own query, {@link AircraftStore} and
+ * {@link CallsignTable}. Responses are parsed on virtual threads too, so regions waiting on the network cost nothing
+ * and the rest parse and project on every core.
+ *
+ * Every aircraft that changes is written to a {@link TrackStore}, stdout, or both, along with every aircraft tracked
+ * once every KEYFRAME_INTERVAL_MS, the same as {@link FR24TrackerThread} records. An aircraft that flies from one
+ * region into another belongs to the region that saw it last, so the region it left doesn't record it as removed.
+ *
+ * Output lines are CSV: time, flight ID, removed, callsign, lat, lng, altitude, heading, speed, x, y.
+ *
+ * The same {@link Metrics} are kept as with a map, with recording counted as publishing and the aircraft count covering
+ * every region. Only paint and dropped frames stay empty.
+ */
+public class HeadlessTracker implements AutoCloseable {
+
+    public static final String CSV_HEADER = "time,flight_id,removed,callsign,lat,lng,altitude,heading,speed,x,y";
+
+    private final FR24TrackerClient client;
+    private final ProjectionConverter projector;
+    private final List<RegionWorker> workers = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    /**
+     * The region each aircraft was last seen in. Regions hold the lock while they record, so an aircraft can't be
+     * added by one region between another deciding to remove it and writing the removal.
+     */
+    private final Map<String, RegionWorker> owners = new HashMap<>();
+    private final AtomicLong polls = new AtomicLong(), failures = new AtomicLong();
+
+    private volatile ToLongFunction<GeoBounds> pollInterval = FR24TrackerThread::defaultPollInterval;
+    private volatile TrackStore history = null;
+    private volatile PrintStream output = null;
+
+    /**
+     * @param source The server to query with %d being the placeholder for the current time.
+     * @param regions The regions to poll, one worker each
+     */
+    public HeadlessTracker(String source, ProjectionConverter projector, List<GeoBounds> regions) {
+        this.client = new FR24TrackerClient(Executors.newVirtualThreadPerTaskExecutor());
+        this.projector = projector;
+        for (GeoBounds region : regions) {
+            workers.add(new RegionWorker(FR24Query.create(source).withBounds(region)));
+        }
+    }
+
+    /**
+     * Starts a virtual thread polling each region.
+     */
+    public void start() {
+        for (int i = 0; i < workers.size(); i++) {
+            threads.add(Thread.ofVirtual().name("Track Region " + i).start(workers.get(i)::run));
+        }
+    }
+
+    /**
+     * Changes how often each region is polled.
+     * @param pollInterval Gives the milliseconds between polls of a region
+     */
+    public void setPollInterval(ToLongFunction<GeoBounds> pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Records every poll to a track store from now on, or stops recording if null. The store is not closed by the
+     * tracker.
+     */
+    public void setHistory(TrackStore history) {
+        this.history = history;
+    }
+
+    /**
+     * Writes every poll as CSV lines to a stream from now on, or stops if null. The header isn't written.
+     */
+    public void setOutput(PrintStream output) {
+        this.output = output;
+    }
+
+    public int getRegionCount() {
+        return workers.size();
+    }
+
+    /**
+     * The number of aircraft being tracked across every region
+     */
+    public int getFlightCount() {
+        synchronized (owners) {
+            return owners.size();
+        }
+    }
+
+    public long getPolls() {
+        return polls.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Stops every worker, interrupting polls in progress, and waits for them to finish.
+     */
+    @Override
+    public void close() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        client.close();
+    }
+
+    /**
+     * Polls one region forever at a fixed rate, backing off when polls fail
+     */
+    private class RegionWorker {
+
+        private final FR24Query query;
+        private final GeoBounds region;
+        private final CallsignTable callsigns = new CallsignTable();
+        private final AircraftStore store = new AircraftStore(callsigns);
+        private final StringBuilder lines = new StringBuilder();
+        private int consecutiveFailures = 0;
+        private long lastKeyframeAt = 0;
+        private TrackStore lastHistory = null;
+
+        RegionWorker(FR24Query query) {
+            this.query = query;
+            this.region = query.bounds();
+        }
+
+        void run() {
+            long nextPollAt = 0;
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    long wait = nextPollAt - System.currentTimeMillis();
+                    if (wait > 0) {
+                        Thread.sleep(wait);
+                    }
+                    long startTime = System.currentTimeMillis();
+                    try {
+                        nextPollAt = poll(startTime);
+                    } catch (RuntimeException e) {
+                        System.err.printf("Unexpected error while tracking %s!\n", region);
+                        e.printStackTrace();
+                        nextPollAt = startTime + pollInterval.applyAsLong(region);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Shutting down
+            }
+        }
+
+        /**
+         * @return When to poll next
+         */
+        private long poll(long startTime) throws InterruptedException {
+            try {
+                FR24QueryResult queryResult = client.query(query);
+                long projectStart = System.nanoTime();
+                AircraftDelta delta = store.update(query.flights(), projector, region, startTime);
+                Metrics.PROJECT.recordSince(projectStart);
+                Metrics.POLLS.increment();
+                polls.incrementAndGet();
+
+                if (consecutiveFailures > 0) {
+                    System.err.printf("Fetching %s recovered after %d failures\n", region, consecutiveFailures);
+                    consecutiveFailures = 0;
+                }
+                // stdout may be taken by the output, so progress always goes to stderr
+                System.err.printf("Fetched %d flights (%d KiB) in %dms for %s, %s\n", queryResult.flightCount(),
+                    queryResult.bytesReceived() / 1024, queryResult.latencyMillis(), region, delta);
+                record(delta, startTime);
+                return startTime + pollInterval.applyAsLong(region);
+            } catch (IOException e) {
+                Metrics.FAILED_POLLS.increment();
+                failures.incrementAndGet();
+                int failuresInRow = ++consecutiveFailures;
+                long backoff = FR24TrackerThread.backoffMillis(pollInterval.applyAsLong(region), failuresInRow);
+                System.err.printf("Failed to fetch %s (%d in a row), retrying in %dms: %s\n", region, failuresInRow,
+                    backoff, e);
+                return System.currentTimeMillis() + backoff;
+            }
+        }
+
+        /**
+         * Writes what changed in a poll to the track store and output. A failure to record is reported but doesn't
+         * fail the poll.
+         */
+        private void record(AircraftDelta delta, long time) {
+            long publishStart = System.nanoTime();
+            TrackStore currentHistory = history;
+            PrintStream currentOutput = output;
+            PlaneColumns columns = store.getColumns();
+            boolean keyframe = currentHistory != lastHistory || time - lastKeyframeAt >= FR24TrackerThread.KEYFRAME_INTERVAL_MS;
+            if (keyframe) {
+                lastHistory = currentHistory;
+                lastKeyframeAt = time;
+            }
+
+            lines.setLength(0);
+            synchronized (owners) {
+                try {
+                    int count = keyframe ? columns.size : delta.changedCount;
+                    for (int k = 0; k < count; k++) {
+                        int index = keyframe ? k : delta.changed[k];
+                        String flightId = store.getFlightId(index);
+                        owners.put(flightId, this);
+                        String callsign = callsigns.name(columns.callsignId[index]);
+                        if (currentHistory != null) {
+                            currentHistory.append(time, flightId, callsign, columns.lat[index], columns.lng[index],
+                                columns.altitude[index], store.getHeading(index), store.getSpeed(index), false);
+                        }
+                        if (currentOutput != null) {
+                            appendLine(time, flightId, false, callsign, columns.lat[index], columns.lng[index],
+                                columns.altitude[index], store.getHeading(index), store.getSpeed(index),
+                                columns.x[index], columns.y[index]);
+                        }
+                    }
+                    for (int k = 0; k < delta.removed; k++) {
+                        String flightId = delta.removedFlightIds[k];
+                        // Only if it hasn't turned up in another region since
+                        if (!owners.remove(flightId, this)) {
+                            continue;
+                        }
+                        if (currentHistory != null) {
+                            currentHistory.append(time, flightId, "", 0, 0, 0, 0, 0, true);
+                        }
+                        if (currentOutput != null) {
+                            appendLine(time, flightId, true, "", 0, 0, 0, 0, 0, 0, 0);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Failed to record flight history!");
+                    e.printStackTrace();
+                }
+                Metrics.AIRCRAFT.set(owners.size());
+            }
+            if (currentOutput != null && lines.length() > 0) {
+                // One print per poll, so lines from different regions never interleave
+                currentOutput.print(lines);
+                currentOutput.flush();
+            }
+            Metrics.PUBLISH.recordSince(publishStart);
+        }
+
+        private void appendLine(long time, String flightId, boolean removed, String callsign, double lat, double lng,
+                double altitude, double heading, double speed, float x, float y) {
+            lines.append(time).append(',').append(flightId).append(',').append(removed).append(',')
+                .append(callsign.replace(',', ' ')).append(',').append(lat).append(',').append(lng).append(',')
+                .append(altitude).append(',').append(heading).append(',').append(speed).append(',')
+                .append(x).append(',').append(y).append('\n');
+        }
+
+    }
+
+}
@@ -0,0 +1,25 @@
+package lakkie.flight;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Waiting on work done by other threads in tests
+ */
+public class Conditions {
+
+    private static final long TIMEOUT_MS = 10_000;
+
+    /**
+     * Checks a condition every few milliseconds until it holds, failing the test if it doesn't within ten seconds
+     */
+    public static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+
+}
@@ -0,0 +1,256 @@
+package lakkie.flight;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lakkie.flight.globepanel.GeoBounds;
+
+/**
+ * A local stand-in for the tracker server, serving a {@link SyntheticTraffic} world on the loopback address. Like the
+ * real server it only returns the aircraft inside the bounds parameter, and compresses responses when asked to. It
+ * can also serve a fixed flight list, which is sent whatever the bounds.
+ *
+ * Latency, which may depend on the bounds asked for, is added before every response, and a fraction of requests can
+ * be failed, either with a 503 or with a body cut off half way through. When moving, the traffic is flown forward by
+ * the time since the last request before each response. The next few requests can also be answered with a chosen
+ * status and no body.
+ */
+public class StubFR24Server implements AutoCloseable {
+
+    private final SyntheticTraffic traffic;
+    private final byte[] fixedFeed;
+    private final HttpServer server;
+    private final Random random = new Random(20);
+
+    private volatile double noise = 0;
+    private volatile ToLongFunction<GeoBounds> latency = bounds -> 0;
+    private volatile double errorRate = 0;
+    private volatile boolean moving = false;
+    private volatile boolean deflate = false;
+    private final AtomicInteger statusesLeft = new AtomicInteger();
+    private volatile int status;
+
+    private long lastRequestAt = System.currentTimeMillis();
+    private final AtomicInteger requests = new AtomicInteger(), errors = new AtomicInteger();
+    private final List<Long> requestTimes = new CopyOnWriteArrayList<>();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private volatile int lastFeedBytes;
+    private volatile long lastResponseNanos;
+
+    public StubFR24Server(SyntheticTraffic traffic) throws IOException {
+        this(traffic, null);
+    }
+
+    /**
+     * @param feed The flight list to answer every request with
+     */
+    public StubFR24Server(byte[] feed) throws IOException {
+        this(null, feed);
+    }
+
+    private StubFR24Server(SyntheticTraffic traffic, byte[] fixedFeed) throws IOException {
+        this.traffic = traffic;
+        this.fixedFeed = fixedFeed;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/feed", this::serveFeed);
+        server.start();
+    }
+
+    /**
+     * The source to give the tracker, with %d where the time goes
+     */
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/feed?t=%d";
+    }
+
+    /**
+     * @param noise Chance from 0 to 1 of each flight being written in an awkward but valid form
+     */
+    public void setNoise(double noise) {
+        this.noise = noise;
+    }
+
+    public void setLatency(long latencyMillis) {
+        this.latency = bounds -> latencyMillis;
+    }
+
+    /**
+     * @param latency Gives the milliseconds to wait before answering a query for some bounds
+     */
+    public void setLatency(ToLongFunction<GeoBounds> latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param errorRate Chance from 0 to 1 of each request failing
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setMoving(boolean moving) {
+        this.moving = moving;
+    }
+
+    /**
+     * @param deflate Whether to compress with deflate rather than gzip when the client accepts it
+     */
+    public void setDeflate(boolean deflate) {
+        this.deflate = deflate;
+    }
+
+    /**
+     * Answers the next requests with a status and no body
+     */
+    public void failNext(int count, int status) {
+        this.status = status;
+        statusesLeft.set(count);
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * System.currentTimeMillis() when each request arrived, in order
+     */
+    public List<Long> getRequestTimes() {
+        return requestTimes;
+    }
+
+    /**
+     * How many different connections requests have come in on
+     */
+    public int getConnections() {
+        return connections.size();
+    }
+
+    /**
+     * Size of the last flight list served, before compression
+     */
+    public int getLastFeedBytes() {
+        return lastFeedBytes;
+    }
+
+    /**
+     * System.nanoTime() when the last successful response started being sent
+     */
+    public long getLastResponseNanos() {
+        return lastResponseNanos;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void serveFeed(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        requestTimes.add(System.currentTimeMillis());
+        connections.add(exchange.getRemoteAddress());
+        if (statusesLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            errors.incrementAndGet();
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        GeoBounds bounds = parseBounds(exchange);
+        try {
+            long latencyMillis = latency.applyAsLong(bounds);
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        byte[] feed;
+        boolean fail, truncate;
+        synchronized (this) {
+            fail = random.nextDouble() < errorRate;
+            truncate = random.nextBoolean();
+            if (fail && !truncate) {
+                errors.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (fixedFeed != null) {
+                feed = fixedFeed;
+            } else {
+                if (moving) {
+                    traffic.advance(now - lastRequestAt);
+                }
+                StringBuilder json = new StringBuilder(traffic.size * 128);
+                traffic.writeFeed(json, bounds, noise, random);
+                feed = json.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            lastRequestAt = now;
+        }
+        lastFeedBytes = feed.length;
+        int length = feed.length;
+        if (fail) {
+            errors.incrementAndGet();
+            length /= 2;
+        }
+
+        String acceptEncoding = String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream(length);
+        if (deflate && acceptEncoding.contains("deflate")) {
+            try (OutputStream deflater = new DeflaterOutputStream(body)) {
+                deflater.write(feed, 0, length);
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "deflate");
+        } else if (acceptEncoding.contains("gzip")) {
+            try (OutputStream gzip = new GZIPOutputStream(body)) {
+                gzip.write(feed, 0, length);
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        } else {
+            body.write(feed, 0, length);
+        }
+
+        if (!fail) {
+            lastResponseNanos = System.nanoTime();
+        }
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream response = exchange.getResponseBody()) {
+            body.writeTo(response);
+        }
+    }
+
+    private static GeoBounds parseBounds(HttpExchange exchange) {
+        for (String parameter : String.valueOf(exchange.getRequestURI().getQuery()).split("&")) {
+            if (parameter.startsWith("bounds=")) {
+                String[] edges = parameter.substring("bounds=".length()).split(",");
+                return new GeoBounds(Double.parseDouble(edges[1]), Double.parseDouble(edges[2]),
+                    Double.parseDouble(edges[0]), Double.parseDouble(edges[3]));
+            }
+        }
+        return GeoBounds.WORLD;
+    }
+
+}
@@ -0,0 +1,148 @@
+package lakkie.flight;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.tracking.FR24Aircraft;
+
+/**
+ * A made up world of aircraft flying in straight lines, written out in the same JSON shape as the tracker server's
+ * flight list. The same seed always makes the same aircraft.
+ *
+ * Noise is the chance that each flight is written in one of the awkward but valid forms the real feed uses, such as
+ * escaped strings, exponents, nulls and extra trailing properties, so parsers see them at scale. Noise never changes
+ * the values that are read back.
+ */
+public class SyntheticTraffic {
+
+    private static final double KNOTS_TO_DEGREES_PER_MILLI = 1.852 / 111.32 / 3_600_000;
+
+    public final int size;
+    public final String[] flightId, callsign;
+    public final double[] lat, lng, heading, altitude, speed;
+
+    public SyntheticTraffic(int size, long seed) {
+        this.size = size;
+        flightId = new String[size];
+        callsign = new String[size];
+        lat = new double[size];
+        lng = new double[size];
+        heading = new double[size];
+        altitude = new double[size];
+        speed = new double[size];
+
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            flightId[i] = String.format("%08x", 0x30000000 + i);
+            callsign[i] = String.format("%c%c%c%d", 'A' + random.nextInt(26), 'A' + random.nextInt(26),
+                'A' + random.nextInt(26), random.nextInt(10000));
+            lat[i] = round(random.nextDouble() * 140 - 65);
+            lng[i] = round(random.nextDouble() * 360 - 180);
+            heading[i] = random.nextInt(360);
+            // A few aircraft on the ground
+            boolean grounded = random.nextInt(20) == 0;
+            altitude[i] = grounded ? 0 : 1000 + random.nextInt(40) * 1000;
+            speed[i] = grounded ? random.nextInt(30) : 150 + random.nextInt(350);
+        }
+    }
+
+    /**
+     * Positions are sent to four decimal places, like the real feed
+     */
+    private static double round(double degrees) {
+        return Math.round(degrees * 1e4) / 1e4;
+    }
+
+    /**
+     * Flies every aircraft along its heading for some time. Aircraft that reach a pole turn around.
+     */
+    public void advance(long millis) {
+        for (int i = 0; i < size; i++) {
+            double distance = speed[i] * KNOTS_TO_DEGREES_PER_MILLI * millis;
+            double radians = Math.toRadians(heading[i]);
+            double newLat = lat[i] + distance * Math.cos(radians);
+            if (Math.abs(newLat) > 85) {
+                heading[i] = (540 - heading[i]) % 360;
+                newLat = Math.copySign(85, newLat);
+            }
+            double newLng = lng[i] + distance * Math.sin(radians) / Math.max(0.1, Math.cos(Math.toRadians(newLat)));
+            newLng = ((newLng + 540) % 360) - 180;
+            lat[i] = round(newLat);
+            lng[i] = round(newLng);
+        }
+    }
+
+    public int countIn(GeoBounds bounds) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (bounds.contains(lat[i], lng[i])) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The aircraft inside bounds as the tracker results would list them
+     */
+    public List<FR24Aircraft> toList(GeoBounds bounds) {
+        List<FR24Aircraft> aircraft = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (bounds.contains(lat[i], lng[i])) {
+                aircraft.add(new FR24Aircraft(lat[i], lng[i], callsign[i], altitude[i]));
+            }
+        }
+        return aircraft;
+    }
+
+    /**
+     * Writes the flight list for the aircraft inside bounds.
+     * @param noise Chance from 0 to 1 of each flight being written in an awkward form
+     */
+    public void writeFeed(StringBuilder feed, GeoBounds bounds, double noise, Random random) {
+        feed.append('{');
+        boolean first = true;
+        for (int i = 0; i < size; i++) {
+            if (!bounds.contains(lat[i], lng[i])) {
+                continue;
+            }
+            if (!first) {
+                feed.append(',');
+            }
+            first = false;
+            boolean noisy = random.nextDouble() < noise;
+            feed.append(noisy ? "\n  \"" : "\"").append(flightId[i]).append("\":[");
+            appendCallsign(feed, callsign[i], noisy);
+            feed.append(',').append(lat[i]).append(',').append(lng[i]).append(',').append((int) heading[i]).append(',');
+            if (noisy) {
+                // Same value, written with an exponent
+                feed.append((long) altitude[i] * 10).append("e-1");
+            } else {
+                feed.append((int) altitude[i]);
+            }
+            feed.append(',').append((int) speed[i]);
+            feed.append(",\"1234\",").append(noisy ? "null" : "\"F-EGLL1\"")
+                .append(",\"A320\",\"G-ABCD\",1700000000,\"LHR\",\"JFK\",\"\",0,0,");
+            appendCallsign(feed, callsign[i], false);
+            feed.append(",0,\"\"");
+            if (noisy) {
+                feed.append(" , false, {\"extra\": [1, \"]\"]}");
+            }
+            feed.append(']');
+        }
+        feed.append('}');
+    }
+
+    private static void appendCallsign(StringBuilder feed, String callsign, boolean escaped) {
+        feed.append('"');
+        if (escaped) {
+            feed.append(String.format("\\u%04x", (int) callsign.charAt(0))).append(callsign, 1, callsign.length());
+        } else {
+            feed.append(callsign);
+        }
+        feed.append('"');
+    }
+
+}
@@ -0,0 +1,210 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.PlaneSnapshot;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.tracking.AircraftDelta;
+import lakkie.flight.tracking.AircraftStore;
+import lakkie.flight.tracking.FR24Aircraft;
+import lakkie.flight.tracking.FR24AircraftColumns;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class TestAircraftStore {
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+
+    @Test
+    void testDeltaCounts() {
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        flights.add("a", "AAA1", 10, 20, 3000);
+        flights.add("b", "BBB2", -10, 40, 0);
+        flights.add("c", "CCC3", 50, -2, 12000);
+
+        AircraftDelta delta = store.update(flights, projector);
+        assertEquals(3, delta.added);
+        assertEquals(3, delta.changedCount);
+
+        // Nothing moved
+        delta = store.update(flights, projector);
+        assertTrue(delta.isEmpty());
+        assertEquals(0, delta.added + delta.updated + delta.removed);
+
+        // a climbs, b lands and is dropped from the feed, d appears
+        flights.clear();
+        flights.add("c", "CCC3", 50, -2, 12000);
+        flights.add("a", "AAA1", 10, 20, 3500);
+        flights.add("d", "DDD4", 0, 0, 100);
+        delta = store.update(flights, projector);
+        assertEquals(1, delta.added);
+        assertEquals(1, delta.updated);
+        assertEquals(1, delta.removed);
+        assertEquals(3, store.size());
+        assertEquals(3500, store.getAircraft(store.indexOf("a")).altitude(), 0);
+        assertEquals(-1, store.indexOf("b"));
+        assertEquals(projector.projectToScreen(0, 0), store.getScreenPosition(store.indexOf("d")));
+    }
+
+    @Test
+    void testRemovingLastAircraftIsAChange() {
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        flights.add("a", "AAA1", 10, 20, 3000);
+        flights.add("b", "BBB2", -10, 40, 0);
+        store.update(flights, projector);
+
+        // b is in the last slot, so nothing has to move into the space it leaves
+        flights.clear();
+        flights.add("a", "AAA1", 10, 20, 3000);
+        AircraftDelta delta = store.update(flights, projector);
+        assertEquals(0, delta.changedCount);
+        assertEquals(1, delta.removed);
+        assertFalse(delta.isEmpty());
+    }
+
+    @Test
+    void testRemovingEveryAircraftIsAChange() {
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        flights.add("a", "AAA1", 10, 20, 3000);
+        flights.add("b", "BBB2", -10, 40, 0);
+        flights.add("c", "CCC3", 50, -2, 12000);
+        store.update(flights, projector);
+
+        flights.clear();
+        AircraftDelta delta = store.update(flights, projector);
+        assertEquals(0, store.size());
+        assertEquals(3, delta.removed);
+        assertFalse(delta.isEmpty());
+    }
+
+    @Test
+    void testRegionsMerge() {
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        GeoBounds west = new GeoBounds(40, -10, 60, 10), east = new GeoBounds(40, 10, 60, 30);
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+
+        flights.add("w1", "WWW1", 50, 0, 30000);
+        flights.add("w2", "WWW2", 45, -5, 30000);
+        store.update(flights, projector, west, 0);
+
+        // The eastern region doesn't remove aircraft that were in the western one
+        flights.clear();
+        flights.add("e1", "EEE1", 50, 20, 30000);
+        AircraftDelta delta = store.update(flights, projector, east, 1000);
+        assertEquals(1, delta.added);
+        assertEquals(0, delta.removed);
+        assertEquals(3, store.size());
+
+        // w2 is gone from the western region
+        flights.clear();
+        flights.add("w1", "WWW1", 50, 0, 30000);
+        delta = store.update(flights, projector, west, 2000);
+        assertEquals(1, delta.removed);
+        assertEquals(-1, store.indexOf("w2"));
+        assertTrue(store.indexOf("e1") >= 0);
+
+        // e1 hasn't been seen for too long
+        delta = store.update(flights, projector, west, 1000 + AircraftStore.OUTSIDE_REGION_TTL_MILLIS);
+        assertEquals(1, delta.removed);
+        assertEquals(-1, store.indexOf("e1"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testPositionTime() {
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        flights.add("a", "AAA1", 10, 20, 30000, 90, 480);
+        store.update(flights, projector, GeoBounds.WORLD, 1000);
+        PlaneColumns columns = store.getColumns();
+        int index = store.indexOf("a");
+        assertEquals(1000, columns.positionTime[index]);
+        assertTrue(columns.lngRate[index] > 0);
+
+        // Turning north without a new position keeps dead reckoning from the old one
+        flights.clear();
+        flights.add("a", "AAA1", 10, 20, 30000, 0, 480);
+        AircraftDelta delta = store.update(flights, projector, GeoBounds.WORLD, 2000);
+        assertEquals(1, delta.updated);
+        assertEquals(1000, columns.positionTime[index]);
+        assertTrue(columns.latRate[index] > 0);
+        assertEquals(0, columns.lngRate[index], 1e-12);
+
+        flights.clear();
+        flights.add("a", "AAA1", 10.1, 20, 30000, 0, 480);
+        store.update(flights, projector, GeoBounds.WORLD, 3000);
+        assertEquals(3000, columns.positionTime[index]);
+
+        // A response merged a poll after it arrived dead reckons from when it arrived
+        flights.clear();
+        flights.add("a", "AAA1", 10.2, 20, 30000, 0, 480, 3500);
+        store.update(flights, projector, GeoBounds.WORLD, 4000);
+        assertEquals(3500, columns.positionTime[index]);
+    }
+
+    @Test
+    void testMirrorStaysInSync() {
+        Random random = new Random(3);
+        PlaneBuffer planes = new PlaneBuffer();
+        AircraftStore store = new AircraftStore(planes.getCallsigns());
+        FR24AircraftColumns flights = new FR24AircraftColumns(4);
+        Map<String, FR24Aircraft> sky = new LinkedHashMap<>();
+        List<FR24Aircraft> mirror = new ArrayList<>();
+
+        for (int poll = 0; poll < 200; poll++) {
+            // Randomly add, move and drop aircraft
+            for (int i = 0; i < 20; i++) {
+                String id = Integer.toHexString(random.nextInt(300));
+                switch (random.nextInt(3)) {
+                    case 0 -> sky.remove(id);
+                    default -> sky.put(id, new FR24Aircraft(random.nextInt(90), random.nextInt(180), "CS" + id, random.nextInt(3)));
+                }
+            }
+            flights.clear();
+            sky.forEach((id, aircraft) -> flights.add(id, aircraft.callsign(), aircraft.lat(), aircraft.lng(), aircraft.altitude()));
+
+            AircraftDelta delta = store.update(flights, projector);
+            while (mirror.size() > delta.size) {
+                mirror.remove(mirror.size() - 1);
+            }
+            while (mirror.size() < delta.size) {
+                mirror.add(null);
+            }
+            for (int i = 0; i < delta.changedCount; i++) {
+                mirror.set(delta.changed[i], store.getAircraft(delta.changed[i]));
+            }
+
+            // The double buffer only copies changed indices, so check the front matches the store exactly
+            planes.publish(store.getColumns(), delta.changed, delta.changedCount);
+            PlaneSnapshot snapshot = planes.acquire();
+            PlaneColumns stored = store.getColumns();
+            assertEquals(stored.size, snapshot.size());
+            for (int i = 0; i < snapshot.size(); i++) {
+                assertEquals(stored.lat[i], snapshot.columns().lat[i], 0);
+                assertEquals(stored.x[i], snapshot.columns().x[i], 0);
+                assertEquals(stored.callsignId[i], snapshot.columns().callsignId[i]);
+            }
+            planes.release(snapshot);
+
+            assertEquals(sky.size(), store.size());
+            for (int i = 0; i < store.size(); i++) {
+                assertEquals(sky.get(store.getFlightId(i)), mirror.get(i), "Mirror out of sync at poll " + poll);
+                assertEquals(i, store.indexOf(store.getFlightId(i)));
+            }
+        }
+    }
+
+}
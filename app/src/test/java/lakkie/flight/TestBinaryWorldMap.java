@@ -0,0 +1,74 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.BinaryWorldMap;
+import lakkie.flight.globepanel.MapShapeData;
+import lakkie.flight.globepanel.MapShapeGenerator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Scanner;
+
+public class TestBinaryWorldMap {
+
+    private static List<MapShapeData> parseTextMap() {
+        try (Scanner scanner = new Scanner(TestBinaryWorldMap.class.getResourceAsStream("/World.txt"))) {
+            return MapShapeData.parseWorldMapFile(scanner);
+        }
+    }
+
+    @Test
+    void testMatchesTextMap() throws IOException {
+        List<MapShapeData> textShapes = parseTextMap();
+        Path file = Files.createTempFile("World", ".fmap");
+        try {
+            try (OutputStream out = Files.newOutputStream(file)) {
+                BinaryWorldMap.write(textShapes, out);
+            }
+            List<MapShapeData> binaryShapes = BinaryWorldMap.load(file);
+
+            assertEquals(textShapes.size(), binaryShapes.size());
+            new MapShapeGenerator(textShapes).generateNewPoints();
+            new MapShapeGenerator(binaryShapes).generateNewPoints();
+            for (int i = 0; i < textShapes.size(); i++) {
+                MapShapeData expected = textShapes.get(i), actual = binaryShapes.get(i);
+                assertEquals(expected.numPoints, actual.numPoints);
+                assertEquals(expected.offsetX, actual.offsetX);
+                assertEquals(expected.offsetY, actual.offsetY);
+
+                float[][] expectedOutline = TestPolygonSimplifier.vertices(expected.getOutline(0));
+                float[][] actualOutline = TestPolygonSimplifier.vertices(actual.getOutline(0));
+                assertEquals(expectedOutline[0].length, actualOutline[0].length, "Shape " + i);
+                assertArrayEquals(expectedOutline[0], actualOutline[0], "Shape " + i);
+                assertArrayEquals(expectedOutline[1], actualOutline[1], "Shape " + i);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testRejectsBadFiles() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryWorldMap.write(parseTextMap().subList(0, 3), out);
+        byte[] bytes = out.toByteArray();
+
+        assertEquals(3, BinaryWorldMap.read(ByteBuffer.wrap(bytes)).size());
+        assertThrows(IOException.class, () -> BinaryWorldMap.read(ByteBuffer.wrap(bytes, 0, bytes.length - 4).slice()));
+        assertThrows(IOException.class, () -> BinaryWorldMap.read(ByteBuffer.wrap("# R = relative".getBytes())));
+
+        // Point the first shape's vertices past the end
+        ByteBuffer corrupt = ByteBuffer.wrap(bytes.clone());
+        corrupt.putInt(16 + 16, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> BinaryWorldMap.read(corrupt));
+    }
+
+}
@@ -0,0 +1,110 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.FrameScheduler;
+import lakkie.flight.globepanel.FrameScheduler.FrameStats;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Steps the scheduler by calling tick directly, with handed over frames queued up instead of sent to the event
+ * dispatch thread, so nothing depends on how fast the machine is.
+ */
+public class TestFrameScheduler {
+
+    private final Queue<Runnable> handedOver = new ArrayDeque<>();
+    private final AtomicInteger rendered = new AtomicInteger();
+
+    private FrameScheduler createScheduler() {
+        return new FrameScheduler(20, rendered::incrementAndGet, handedOver::add);
+    }
+
+    private void renderHandedOver() {
+        while (!handedOver.isEmpty()) {
+            handedOver.remove().run();
+        }
+    }
+
+    @Test
+    void testRequestsAreCoalesced() {
+        try (FrameScheduler frames = createScheduler()) {
+            // The first frame is always drawn
+            frames.tick();
+            renderHandedOver();
+
+            for (int i = 0; i < 100; i++) {
+                frames.requestFrame();
+            }
+            frames.tick();
+            assertEquals(1, handedOver.size());
+
+            // More requests and ticks while that frame waits don't hand over another
+            for (int i = 0; i < 50; i++) {
+                frames.requestFrame();
+                frames.tick();
+            }
+            assertEquals(1, handedOver.size());
+            renderHandedOver();
+            assertEquals(2, rendered.get());
+
+            // The requests made while it waited share one more frame
+            frames.tick();
+            frames.tick();
+            renderHandedOver();
+
+            FrameStats stats = frames.getStats();
+            assertEquals(3, rendered.get());
+            assertEquals(3, stats.frames());
+            assertEquals(150, stats.requests());
+        }
+    }
+
+    @Test
+    void testIdleWithoutRequests() {
+        try (FrameScheduler frames = createScheduler()) {
+            for (int i = 0; i < 10; i++) {
+                frames.tick();
+                renderHandedOver();
+            }
+            // Only the first frame
+            assertEquals(1, rendered.get());
+        }
+    }
+
+    @Test
+    void testAnimatingRendersEveryTick() {
+        try (FrameScheduler frames = createScheduler()) {
+            frames.setAnimating(() -> true);
+            for (int i = 0; i < 10; i++) {
+                frames.tick();
+                renderHandedOver();
+            }
+            assertEquals(10, rendered.get());
+
+            // A frame still waiting holds animation back too
+            frames.tick();
+            frames.tick();
+            assertEquals(1, handedOver.size());
+            renderHandedOver();
+
+            frames.setAnimating(() -> false);
+            frames.tick();
+            assertTrue(handedOver.isEmpty());
+            assertEquals(11, frames.getStats().frames());
+
+            frames.setMaxFramesPerSecond(10);
+            assertEquals(10, frames.getMaxFramesPerSecond());
+        }
+    }
+
+    @Test
+    void testRejectsBadCap() {
+        assertThrows(IllegalArgumentException.class, () -> new FrameScheduler(0, () -> { }));
+    }
+
+}
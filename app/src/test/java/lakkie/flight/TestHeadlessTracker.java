@@ -0,0 +1,136 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackRecord;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.metrics.Metrics;
+import lakkie.flight.tracking.HeadlessTracker;
+
+import static lakkie.flight.Conditions.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TestHeadlessTracker {
+
+    private static final int AIRCRAFT = 2000;
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+    private SyntheticTraffic traffic;
+    private StubFR24Server server;
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        traffic = new SyntheticTraffic(AIRCRAFT, 21);
+        server = new StubFR24Server(traffic);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void testSplitCoversWorld() {
+        List<GeoBounds> shards = GeoBounds.WORLD.split(3, 7);
+        assertEquals(21, shards.size());
+        double area = 0;
+        for (GeoBounds shard : shards) {
+            area += shard.area();
+        }
+        assertEquals(GeoBounds.WORLD.area(), area, 1e-6);
+        assertEquals(new GeoBounds(30, 180 - 360 / 7.0, 90, 180), shards.get(20));
+        assertThrows(IllegalArgumentException.class, () -> GeoBounds.WORLD.split(0, 1));
+    }
+
+    @Test
+    void testWritesEveryRegion() throws IOException, InterruptedException {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        try (TrackStore history = new TrackStore(directory);
+                HeadlessTracker tracker = new HeadlessTracker(server.url(), projector, GeoBounds.WORLD.split(2, 3))) {
+            tracker.setPollInterval(region -> 50);
+            tracker.setHistory(history);
+            tracker.setOutput(new PrintStream(csv, true, StandardCharsets.UTF_8));
+            assertEquals(6, tracker.getRegionCount());
+            long published = Metrics.PUBLISH.getCount();
+            tracker.start();
+            waitFor(() -> tracker.getFlightCount() == AIRCRAFT && tracker.getPolls() >= 12);
+            assertEquals(0, tracker.getFailures());
+            // Both are set once a poll finishes recording, which is after it's counted
+            waitFor(() -> Metrics.AIRCRAFT.get() == AIRCRAFT && Metrics.PUBLISH.getCount() >= published + 12);
+
+            // Every aircraft written once, by whichever region it was in, and nothing since as nothing moved
+            assertEquals(AIRCRAFT, history.size());
+            String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals(AIRCRAFT, lines.length);
+            Set<String> flightIds = new HashSet<>();
+            for (String line : lines) {
+                String[] fields = line.split(",");
+                assertEquals(HeadlessTracker.CSV_HEADER.split(",").length, fields.length);
+                assertEquals("false", fields[2]);
+                flightIds.add(fields[1]);
+            }
+            assertEquals(AIRCRAFT, flightIds.size());
+
+            // The projected position comes out with the rest
+            String[] first = lines[0].split(",");
+            int index = List.of(traffic.flightId).indexOf(first[1]);
+            assertEquals(traffic.callsign[index], first[3]);
+            assertEquals(projector.projectToScreen(traffic.lat[index], traffic.lng[index]).x(),
+                Double.parseDouble(first[9]), 0.5);
+        }
+    }
+
+    @Test
+    void testAircraftChangingRegionStaysTracked() throws IOException, InterruptedException {
+        try (TrackStore history = new TrackStore(directory);
+                HeadlessTracker tracker = new HeadlessTracker(server.url(), projector, GeoBounds.WORLD.split(1, 2))) {
+            tracker.setPollInterval(region -> 20);
+            tracker.setHistory(history);
+            tracker.start();
+            waitFor(() -> tracker.getFlightCount() == AIRCRAFT);
+
+            // Fly every aircraft into the other half of the world
+            synchronized (server) {
+                for (int i = 0; i < AIRCRAFT; i++) {
+                    traffic.lng[i] = (traffic.lng[i] < 0) ? traffic.lng[i] + 180 : traffic.lng[i] - 180;
+                }
+            }
+            long polls = tracker.getPolls();
+            waitFor(() -> tracker.getPolls() >= polls + 6);
+            assertEquals(AIRCRAFT, tracker.getFlightCount());
+
+            // Each region may have seen the move first, but the last record of every aircraft is where it is now
+            Map<String, TrackRecord> last = new HashMap<>();
+            for (long position = history.firstPosition(); position != TrackStore.NO_RECORD; position = history.nextPosition(position)) {
+                TrackRecord record = new TrackRecord();
+                assertTrue(history.read(position, record));
+                last.put(record.flightId, record);
+            }
+            assertEquals(AIRCRAFT, last.size());
+            for (int i = 0; i < AIRCRAFT; i++) {
+                TrackRecord latest = last.get(traffic.flightId[i]);
+                assertFalse(latest.removed, traffic.flightId[i] + " was left removed");
+                assertEquals(traffic.lng[i], latest.lng, 0);
+            }
+        }
+    }
+
+}
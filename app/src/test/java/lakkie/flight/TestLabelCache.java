@@ -0,0 +1,78 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.LabelCache;
+import lakkie.flight.globepanel.LabelCache.Label;
+import lakkie.flight.globepanel.LabelLayout;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Font;
+
+public class TestLabelCache {
+
+    private static final Font FONT = new Font("Courier New", Font.BOLD, 6);
+
+    @Test
+    void testLabelsAreReused() {
+        CallsignTable callsigns = new CallsignTable();
+        int id = callsigns.intern("baw304");
+        LabelCache cache = new LabelCache(FONT, Color.RED, 1024 * 1024);
+
+        Label label = cache.get(callsigns, id, 1);
+        assertSame(label, cache.get(callsigns, id, 1));
+        assertEquals(1, cache.getLabelsRendered());
+        assertEquals(label.image().getWidth(), cache.getWidth(callsigns, id, 1), 1);
+
+        // Zooming in renders a bigger label, which the measured width predicts without rendering
+        Label zoomed = cache.get(callsigns, id, 4);
+        assertNotSame(label, zoomed);
+        assertEquals(zoomed.image().getWidth(), cache.getWidth(callsigns, id, 4), zoomed.image().getWidth() * 0.2);
+        assertEquals(zoomed.image().getHeight(), cache.getHeight(4), zoomed.image().getHeight() * 0.2);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvicted() {
+        CallsignTable callsigns = new CallsignTable();
+        int first = callsigns.intern("AAA1"), second = callsigns.intern("BBB2"), third = callsigns.intern("CCC3");
+        LabelCache sizer = new LabelCache(FONT, Color.RED, Long.MAX_VALUE);
+        sizer.get(callsigns, first, 1);
+        long labelBytes = sizer.getMemoryUsed();
+
+        LabelCache cache = new LabelCache(FONT, Color.RED, labelBytes * 2);
+        Label firstLabel = cache.get(callsigns, first, 1);
+        cache.get(callsigns, second, 1);
+        // Use the first again, so the second is the least recent
+        cache.get(callsigns, first, 1);
+        cache.get(callsigns, third, 1);
+
+        assertEquals(2, cache.size());
+        assertTrue(cache.getMemoryUsed() <= labelBytes * 2);
+        assertSame(firstLabel, cache.get(callsigns, first, 1));
+        cache.get(callsigns, second, 1);
+        assertEquals(4, cache.getLabelsRendered());
+    }
+
+    @Test
+    void testLayoutSkipsOverlapsAndOffscreen() {
+        LabelLayout layout = new LabelLayout();
+        layout.begin(0, 0, 100, 100, 10);
+        assertTrue(layout.tryPlace(10, 10, 30, 18));
+        // Overlaps the first
+        assertFalse(layout.tryPlace(25, 15, 45, 23));
+        // Well clear of it
+        assertTrue(layout.tryPlace(50, 50, 70, 58));
+        // Off screen
+        assertFalse(layout.tryPlace(110, 10, 130, 18));
+        assertFalse(layout.tryPlace(-30, 10, -10, 18));
+
+        // Every cell is free again in the next frame
+        layout.begin(0, 0, 100, 100, 10);
+        assertTrue(layout.tryPlace(25, 15, 45, 23));
+    }
+
+}
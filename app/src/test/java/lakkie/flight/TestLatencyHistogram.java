@@ -0,0 +1,108 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.metrics.LatencyHistogram;
+import lakkie.flight.metrics.Metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class TestLatencyHistogram {
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getP50Millis(), 0);
+
+        // Every whole microsecond from 1 to 10ms
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5.0005, histogram.getMeanMillis(), 1e-9);
+        assertEquals(10, histogram.getMaxMillis(), 0);
+        assertEquals(5, histogram.getP50Millis(), 5 * 0.03);
+        assertEquals(9, histogram.getP90Millis(), 9 * 0.03);
+        assertEquals(9.9, histogram.getP99Millis(), 9.9 * 0.03);
+        assertEquals(10, histogram.getPercentileMillis(100), 0);
+        // Small values are exact
+        assertEquals(0.001, histogram.getPercentileMillis(0), 0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMillis(), 0);
+    }
+
+    @Test
+    void testLongTimesClamped() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+        assertEquals(LatencyHistogram.MAX_MICROS / 1000.0, histogram.getMaxMillis(), 0);
+        assertEquals(LatencyHistogram.MAX_MICROS / 1000.0, histogram.getP99Millis(), LatencyHistogram.MAX_MICROS / 1000.0 * 0.03);
+        assertEquals(0, histogram.getPercentileMillis(50), 0);
+    }
+
+    @Test
+    void testRecordingDoesNotAllocate() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        // Warm up so the loop is compiled
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 37L);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            histogram.recordSince(System.nanoTime() - i * 1013L);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 1024, "Recording allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long micros = (t + 1) * 1000L;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(micros * 1000);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(4, histogram.getMaxMillis(), 0);
+        assertEquals(2.5, histogram.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    void testVisibleOverJmx() throws JMException {
+        Metrics.registerMBeans();
+        // Registering again is harmless
+        Metrics.registerMBeans();
+        Metrics.PARSE.record(3_000_000);
+        Metrics.BYTES_RECEIVED.add(2048);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName parse = new ObjectName("lakkie.flight:type=Latency,name=parse");
+        assertEquals(Metrics.PARSE.getCount(), server.getAttribute(parse, "Count"));
+        assertEquals(Metrics.PARSE.getP99Millis(), (double) server.getAttribute(parse, "P99Millis"), 0);
+        assertEquals(Metrics.BYTES_RECEIVED.get(), server.getAttribute(new ObjectName("lakkie.flight:type=Metrics"), "BytesReceived"));
+        for (LatencyHistogram histogram : Metrics.HISTOGRAMS) {
+            assertTrue(server.isRegistered(new ObjectName("lakkie.flight:type=Latency,name=" + histogram.getName())));
+        }
+    }
+
+}
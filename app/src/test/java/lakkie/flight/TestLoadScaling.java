@@ -0,0 +1,149 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.CallsignTable;
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.GlobePanel;
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+import lakkie.flight.tracking.AircraftStore;
+import lakkie.flight.tracking.FR24AircraftColumns;
+import lakkie.flight.tracking.FR24FeedParser;
+import lakkie.flight.tracking.FR24TrackerClient;
+import lakkie.flight.tracking.FR24TrackerThread;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the tracker and an offscreen globe panel against a {@link StubFR24Server} with more and more aircraft, and
+ * reports how each stage scales. Too slow for every build, so only runs with ./gradlew loadTest.
+ *
+ * Parse and projection times are measured on their own against the same feed the server sends. Publish latency is
+ * from the server starting to send a response until the tracker has published its aircraft, and frame time is a
+ * paint of the panel over Europe with everything the tracker published.
+ */
+@Tag("load")
+public class TestLoadScaling {
+
+    private static final int[] AIRCRAFT_COUNTS = { 100, 1_000, 10_000, 100_000 };
+    private static final int ROUNDS = 10;
+    private static final long POLL_INTERVAL_MS = 50;
+    private static final int FRAME_WIDTH = 1280, FRAME_HEIGHT = 720;
+
+    private static final double NOISE = 0.1, ERROR_RATE = 0.05;
+    private static final long LATENCY_MS = 20;
+
+    @Test
+    void testScaling() throws IOException, InterruptedException {
+        System.out.printf("%9s %9s %9s %11s %11s %11s %9s %7s%n",
+            "aircraft", "feed KiB", "parse ms", "project ms", "publish ms", "worst ms", "frame ms", "errors");
+        for (int count : AIRCRAFT_COUNTS) {
+            measure(count);
+        }
+    }
+
+    private void measure(int count) throws IOException, InterruptedException {
+        // The same world as the server, flown separately so the server's copy isn't touched
+        SyntheticTraffic offline = new SyntheticTraffic(count, count);
+        Random random = new Random(count);
+        FR24FeedParser parser = new FR24FeedParser();
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        GlobePanel panel = new GlobePanel();
+        AircraftStore store = new AircraftStore(new CallsignTable());
+        long[] parseNanos = new long[ROUNDS], projectNanos = new long[ROUNDS];
+        int feedBytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            offline.advance(1000);
+            StringBuilder json = new StringBuilder(count * 128);
+            offline.writeFeed(json, GeoBounds.WORLD, NOISE, random);
+            byte[] feed = json.toString().getBytes(StandardCharsets.UTF_8);
+            feedBytes = feed.length;
+
+            long start = System.nanoTime();
+            assertEquals(count, parser.parse(new ByteArrayInputStream(feed), flights));
+            long parsed = System.nanoTime();
+            store.update(flights, panel.projector, GeoBounds.WORLD, round * 1000L);
+            long projected = System.nanoTime();
+            parseNanos[round] = parsed - start;
+            projectNanos[round] = projected - parsed;
+        }
+
+        SyntheticTraffic traffic = new SyntheticTraffic(count, count);
+        long[] publishNanos = new long[ROUNDS];
+        int errors;
+        try (StubFR24Server server = new StubFR24Server(traffic); FR24TrackerClient client = new FR24TrackerClient()) {
+            server.setNoise(NOISE);
+            server.setLatency(LATENCY_MS);
+            server.setErrorRate(ERROR_RATE);
+            server.setMoving(true);
+
+            CountDownLatch published = new CountDownLatch(ROUNDS);
+            FR24TrackerThread tracker = new FR24TrackerThread(server.url(), client, panel.projector, panel.planes,
+                () -> GeoBounds.WORLD, () -> {
+                    long latency = System.nanoTime() - server.getLastResponseNanos();
+                    long remaining = published.getCount();
+                    if (remaining > 0) {
+                        publishNanos[(int) (ROUNDS - remaining)] = latency;
+                        published.countDown();
+                    }
+                });
+            try (tracker) {
+                tracker.setPollInterval(region -> POLL_INTERVAL_MS);
+                tracker.start();
+                assertTrue(published.await(2, TimeUnit.MINUTES), "Only published " + (ROUNDS - published.getCount()) + " times");
+            }
+            errors = server.getErrors();
+        }
+        assertEquals(count, panel.planes.peek().size());
+
+        panel.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+        panel.getMapLoaded().join();
+        Point europe = panel.projector.projectToScreen(50, 10);
+        panel.setCamera((int) europe.x() - FRAME_WIDTH / 2, (int) europe.y() - FRAME_HEIGHT / 2, 1);
+        BufferedImage frame = new BufferedImage(FRAME_WIDTH, FRAME_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        long[] frameNanos = new long[ROUNDS];
+        // One frame to warm up the label cache
+        paint(panel, frame);
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            paint(panel, frame);
+            frameNanos[round] = System.nanoTime() - start;
+        }
+        panel.frames.close();
+
+        Arrays.sort(publishNanos);
+        System.out.printf("%9d %9d %9.2f %11.2f %11.2f %11.2f %9.2f %7d%n", count, feedBytes / 1024,
+            median(parseNanos), median(projectNanos), median(publishNanos), publishNanos[ROUNDS - 1] / 1e6,
+            median(frameNanos), errors);
+    }
+
+    private static void paint(GlobePanel panel, BufferedImage frame) {
+        Graphics2D g2d = frame.createGraphics();
+        try {
+            panel.paint(g2d);
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    /**
+     * @return The median in milliseconds
+     */
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+}
@@ -0,0 +1,83 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.MapTileCache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestMapTileCache {
+
+    private static final long TILE_BYTES = MapTileCache.TILE_SIZE * MapTileCache.TILE_SIZE * 4;
+
+    private final List<float[]> rendered = new ArrayList<>();
+    private final BufferedImage frame = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+
+    private void renderTile(Graphics2D g2d, float minX, float minY, float maxX, float maxY, float zoom) {
+        rendered.add(new float[] { minX, minY, maxX, maxY, zoom });
+        g2d.setColor(Color.PINK);
+        g2d.fill(new Rectangle2D.Float(minX, minY, maxX - minX, maxY - minY));
+    }
+
+    @Test
+    void testTilesAreReused() {
+        MapTileCache tiles = new MapTileCache(100 * TILE_BYTES, this::renderTile);
+        Graphics2D g2d = frame.createGraphics();
+
+        // At zoom 1 each tile is 256 world units, so this is 2 by 2 tiles
+        tiles.draw(g2d, 10, 10, 500, 500, 1);
+        assertEquals(4, rendered.size());
+        assertEquals(4, tiles.size());
+        for (float[] tile : rendered) {
+            assertEquals(256, tile[2] - tile[0], 1e-3);
+            assertEquals(1, tile[4], 1e-6);
+        }
+
+        // Panning within the same tiles, then just past them
+        tiles.draw(g2d, 20, 20, 510, 510, 1);
+        assertEquals(4, tiles.getTilesRendered());
+        tiles.draw(g2d, 300, 10, 700, 500, 1);
+        assertEquals(6, tiles.getTilesRendered());
+
+        // A slightly smaller zoom still uses the same bucket
+        tiles.draw(g2d, 10, 10, 500, 500, 0.9f);
+        assertEquals(6, tiles.getTilesRendered());
+        g2d.dispose();
+
+        // Tiles draw at the same place the map would have
+        assertEquals(Color.PINK.getRGB(), frame.getRGB(300, 300));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyDrawn() {
+        MapTileCache tiles = new MapTileCache(3 * TILE_BYTES, this::renderTile);
+        Graphics2D g2d = frame.createGraphics();
+
+        tiles.draw(g2d, 0, 0, 10, 10, 1);
+        tiles.draw(g2d, 300, 0, 310, 10, 1);
+        tiles.draw(g2d, 600, 0, 610, 10, 1);
+        // Touch the first so the second is the oldest
+        tiles.draw(g2d, 0, 0, 10, 10, 1);
+        tiles.draw(g2d, 900, 0, 910, 10, 1);
+        assertEquals(3, tiles.size());
+        assertEquals(3 * TILE_BYTES, tiles.getMemoryUsed());
+        assertEquals(4, tiles.getTilesRendered());
+
+        tiles.draw(g2d, 0, 0, 10, 10, 1);
+        assertEquals(4, tiles.getTilesRendered());
+        tiles.draw(g2d, 300, 0, 310, 10, 1);
+        assertEquals(5, tiles.getTilesRendered());
+
+        tiles.clear();
+        assertEquals(0, tiles.size());
+        g2d.dispose();
+    }
+
+}
@@ -0,0 +1,71 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.MotionModel;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.ProjectionConverter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMotionModel {
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+
+    private static PlaneColumns plane(double lat, double lng, double heading, double speed, long positionTime) {
+        PlaneColumns planes = new PlaneColumns(4);
+        planes.size = 1;
+        planes.lat[0] = lat;
+        planes.lng[0] = lng;
+        planes.positionTime[0] = positionTime;
+        MotionModel.setVelocity(planes, 0, heading, speed);
+        return planes;
+    }
+
+    @Test
+    void testEastAtEquator() {
+        // 480 knots for 10 seconds is 1.333 nautical miles, or 1.333 minutes of longitude at the equator
+        PlaneColumns planes = plane(0, 10, 90, 480, 1000);
+        MotionModel motion = new MotionModel();
+        motion.extrapolate(planes, new int[] { 0 }, 1, 11_000, projector);
+
+        assertEquals(0, motion.lat[0], 1e-9);
+        assertEquals(10 + 1.3333 / 60, motion.lng[0], 1e-5);
+        float[] x = new float[1], y = new float[1];
+        projector.projectToScreen(new double[] { 0 }, new double[] { motion.lng[0] }, x, y, 1);
+        assertEquals(x[0], motion.x[0], 0.01);
+        assertEquals(y[0], motion.y[0], 0.01);
+    }
+
+    @Test
+    void testNorth() {
+        PlaneColumns planes = plane(45, 0, 0, 600, 0);
+        MotionModel motion = new MotionModel();
+        motion.extrapolate(planes, new int[] { 0 }, 1, 10_000, projector);
+
+        assertEquals(45 + 1.6667 / 60, motion.lat[0], 1e-5);
+        assertEquals(0, motion.lng[0], 1e-9);
+    }
+
+    @Test
+    void testLongitudeStretchesTowardsPoles() {
+        PlaneColumns planes = plane(60, 0, 90, 480, 0);
+        // A degree of longitude at 60 degrees is half as long as at the equator
+        assertEquals(2 * 480 / 60.0 / 3_600_000, planes.lngRate[0], 1e-12);
+    }
+
+    @Test
+    void testExtrapolationIsCapped() {
+        PlaneColumns planes = plane(0, 179.99, 90, 600, 0);
+        MotionModel motion = new MotionModel();
+        motion.extrapolate(planes, new int[] { 0 }, 1, MotionModel.MAX_EXTRAPOLATION_MILLIS * 10, projector);
+        double capped = 179.99 + 600 / 60.0 / 3_600_000 * MotionModel.MAX_EXTRAPOLATION_MILLIS;
+        // Wraps around the antimeridian
+        assertEquals(capped - 360, motion.lng[0], 1e-9);
+
+        // Reports from the future don't move backwards
+        motion.extrapolate(planes, new int[] { 0 }, 1, -5000, projector);
+        assertEquals(179.99, motion.lng[0], 1e-9);
+    }
+
+}
@@ -0,0 +1,133 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneColumns;
+import lakkie.flight.globepanel.PlaneSnapshot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestPlaneBuffer {
+
+    private static final int GENERATIONS = 20_000;
+    private static final int MAX_AIRCRAFT = 500;
+    private static final int READERS = 4;
+
+    /**
+     * Publishes as fast as possible while readers, some of them slow, check that every snapshot they see is exactly
+     * what was published for its generation. Each aircraft's columns are all written with the same value, so a
+     * reader that sees positions from one generation and info from another finds them disagreeing.
+     */
+    @Test
+    void testReadersSeeConsistentGenerations() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        Map<Long, Long> checksums = new ConcurrentHashMap<>();
+        checksums.put(0L, 0L);
+        AtomicBoolean publishing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong framesChecked = new AtomicLong();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            boolean slowReader = (r == 0);
+            Thread reader = new Thread(() -> {
+                long lastGeneration = 0;
+                while (publishing.get() && failure.get() == null) {
+                    PlaneSnapshot snapshot = planes.acquire();
+                    try {
+                        String problem = checkSnapshot(snapshot, checksums, lastGeneration);
+                        if (problem != null) {
+                            failure.compareAndSet(null, problem);
+                        }
+                        lastGeneration = snapshot.generation();
+                        if (slowReader) {
+                            // Hold the snapshot across several publishes
+                            Thread.sleep(1);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        planes.release(snapshot);
+                    }
+                    framesChecked.incrementAndGet();
+                }
+            }, "Reader " + r);
+            reader.start();
+            readers.add(reader);
+        }
+
+        Random random = new Random(5);
+        PlaneColumns source = new PlaneColumns(MAX_AIRCRAFT);
+        int[] changed = new int[MAX_AIRCRAFT];
+        for (long generation = 1; generation <= GENERATIONS && failure.get() == null; generation++) {
+            int oldSize = source.size;
+            source.size = 1 + random.nextInt(MAX_AIRCRAFT);
+            int changedCount = 0;
+            for (int i = 0; i < source.size; i++) {
+                // Every index past the old size has to be written, the rest only sometimes
+                if (i >= oldSize || random.nextInt(4) == 0) {
+                    setAircraft(source, i, generation);
+                    changed[changedCount++] = i;
+                }
+            }
+            checksums.put(generation, checksum(source, source.size));
+            planes.publish(source, changed, changedCount);
+        }
+
+        publishing.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+        assertEquals(GENERATIONS, planes.peek().generation());
+        assertTrue(framesChecked.get() > 0);
+    }
+
+    private static String checkSnapshot(PlaneSnapshot snapshot, Map<Long, Long> checksums, long lastGeneration) {
+        if (snapshot.generation() < lastGeneration) {
+            return "Generation went backwards from " + lastGeneration + " to " + snapshot.generation();
+        }
+        PlaneColumns columns = snapshot.columns();
+        for (int i = 0; i < snapshot.size(); i++) {
+            long value = columns.callsignId[i];
+            if (value > snapshot.generation() || columns.lat[i] != value || columns.lng[i] != value
+                    || columns.altitude[i] != value || columns.x[i] != value || columns.y[i] != value) {
+                return String.format("Aircraft %d is torn in generation %d", i, snapshot.generation());
+            }
+        }
+        long expected = checksums.get(snapshot.generation());
+        long actual = checksum(columns, snapshot.size());
+        if (expected != actual) {
+            return String.format("Generation %d doesn't match what was published", snapshot.generation());
+        }
+        return null;
+    }
+
+    private static void setAircraft(PlaneColumns columns, int index, long generation) {
+        columns.lat[index] = generation;
+        columns.lng[index] = generation;
+        columns.altitude[index] = generation;
+        columns.x[index] = generation;
+        columns.y[index] = generation;
+        columns.callsignId[index] = (int) generation;
+    }
+
+    private static long checksum(PlaneColumns columns, int size) {
+        long checksum = size;
+        for (int i = 0; i < size; i++) {
+            checksum = checksum * 31 + columns.callsignId[i];
+        }
+        return checksum;
+    }
+
+}
@@ -0,0 +1,117 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.MapShapeData;
+import lakkie.flight.globepanel.MapShapeGenerator;
+import lakkie.flight.globepanel.PolygonSimplifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+
+public class TestPolygonSimplifier {
+
+    @Test
+    void testStaysWithinTolerance() {
+        Random random = new Random(7);
+        int numPoints = 2000;
+        int[] xPoints = new int[numPoints];
+        int[] yPoints = new int[numPoints];
+        for (int i = 0; i < numPoints; i++) {
+            double angle = 2 * Math.PI * i / numPoints;
+            xPoints[i] = (int) (Math.cos(angle) * 1000) + random.nextInt(5);
+            yPoints[i] = (int) (Math.sin(angle) * 1000) + random.nextInt(5);
+        }
+
+        double tolerance = 10;
+        float[][] simplified = vertices(PolygonSimplifier.simplify(xPoints, yPoints, numPoints, tolerance));
+        float[] simplifiedX = simplified[0], simplifiedY = simplified[1];
+        assertTrue(simplifiedX.length < numPoints / 10, "Only dropped to " + simplifiedX.length);
+        assertEquals(xPoints[0], simplifiedX[0], 0);
+        assertEquals(xPoints[numPoints - 1], simplifiedX[simplifiedX.length - 1], 0);
+
+        // Every original vertex must be within tolerance of the simplified outline
+        for (int i = 0; i < numPoints; i++) {
+            double nearest = Double.MAX_VALUE;
+            for (int k = 0; k + 1 < simplifiedX.length; k++) {
+                nearest = Math.min(nearest, Line2D.ptSegDist(simplifiedX[k], simplifiedY[k],
+                    simplifiedX[k + 1], simplifiedY[k + 1], xPoints[i], yPoints[i]));
+            }
+            assertTrue(nearest <= tolerance, "Vertex " + i + " is " + nearest + " away");
+        }
+    }
+
+    @Test
+    void testWorldMapLevelsOfDetail() {
+        Scanner scanner = new Scanner(TestPolygonSimplifier.class.getResourceAsStream("/World.txt"));
+        List<MapShapeData> shapes = MapShapeData.parseWorldMapFile(scanner);
+        scanner.close();
+        new MapShapeGenerator(shapes).generateNewPoints();
+
+        int fullVertices = countVertices(shapes, 0);
+        int zoomedOutVertices = countVertices(shapes, MapShapeData.detailLevelForZoom(0.1f));
+        assertEquals(0, MapShapeData.detailLevelForZoom(10));
+        assertEquals(MapShapeData.DETAIL_TOLERANCES.length - 1, MapShapeData.detailLevelForZoom(0.1f));
+        assertTrue(zoomedOutVertices < fullVertices * 0.6,
+            String.format("%d vertices zoomed out, %d in full", zoomedOutVertices, fullVertices));
+    }
+
+    @Test
+    void testCoarsestLevelPublishedFirst() {
+        Scanner scanner = new Scanner(TestPolygonSimplifier.class.getResourceAsStream("/World.txt"));
+        List<MapShapeData> shapes = MapShapeData.parseWorldMapFile(scanner);
+        scanner.close();
+        int coarsest = MapShapeData.DETAIL_TOLERANCES.length - 1;
+        assertNull(shapes.get(0).getOutline(0));
+
+        List<Integer> fullVertices = new ArrayList<>();
+        new MapShapeGenerator(shapes).generateNewPoints(() -> fullVertices.add(countVertices(shapes, 0)));
+        assertEquals(MapShapeData.DETAIL_TOLERANCES.length, fullVertices.size());
+        // Until the full outlines are built, asking for them gives the coarsest
+        assertEquals(countVertices(shapes, coarsest), fullVertices.get(0).intValue());
+        assertTrue(fullVertices.get(1) > fullVertices.get(0));
+        assertEquals(countVertices(shapes, 0), fullVertices.get(fullVertices.size() - 1).intValue());
+
+        int shapeVertices = 0;
+        for (MapShapeData shape : shapes) {
+            shapeVertices += shape.numPoints;
+            assertNotNull(shape.getBounds());
+        }
+        assertEquals(shapeVertices, countVertices(shapes, 0));
+    }
+
+    private static int countVertices(List<MapShapeData> shapes, int detailLevel) {
+        int vertices = 0;
+        for (MapShapeData shape : shapes) {
+            vertices += vertices(shape.getOutline(detailLevel))[0].length;
+        }
+        return vertices;
+    }
+
+    /**
+     * @return The x and y of every vertex in a closed outline
+     */
+    static float[][] vertices(Path2D.Float outline) {
+        List<float[]> points = new ArrayList<>();
+        float[] coords = new float[6];
+        for (PathIterator path = outline.getPathIterator(null); !path.isDone(); path.next()) {
+            if (path.currentSegment(coords) != PathIterator.SEG_CLOSE) {
+                points.add(new float[] { coords[0], coords[1] });
+            }
+        }
+        float[][] vertices = new float[2][points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            vertices[0][i] = points.get(i)[0];
+            vertices[1][i] = points.get(i)[1];
+        }
+        return vertices;
+    }
+
+}
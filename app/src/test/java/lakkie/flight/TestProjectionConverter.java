@@ -0,0 +1,102 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.globepanel.ProjectionConverter.LatLng;
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+public class TestProjectionConverter {
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+
+    /**
+     * Far below a pixel even at the maximum zoom
+     */
+    private static final double TOLERANCE = 0.01;
+
+    @Test
+    void testBatchMatchesScalar() {
+        Random random = new Random(11);
+        int count = 10_000;
+        double[] lat = new double[count], lng = new double[count];
+        for (int i = 0; i < count; i++) {
+            if (i < 200) {
+                // Table boundaries, poles and the antimeridian
+                lat[i] = (i % 37) * 5 - 90;
+                lng[i] = (i % 3 - 1) * 180;
+            } else {
+                lat[i] = random.nextDouble() * 180 - 90;
+                lng[i] = random.nextDouble() * 360 - 180;
+            }
+        }
+
+        float[] x = new float[count], y = new float[count];
+        projector.projectToScreen(lat, lng, x, y, count);
+        for (int i = 0; i < count; i++) {
+            Point expected = projector.projectToScreen(lat[i], lng[i]);
+            assertEquals(expected.x(), x[i], TOLERANCE, "x of " + lat[i] + ", " + lng[i]);
+            assertEquals(expected.y(), y[i], TOLERANCE, "y of " + lat[i] + ", " + lng[i]);
+        }
+    }
+
+    @Test
+    void testBatchOnlyWritesIndices() {
+        double[] lat = { 10, 20, 30, 40 }, lng = { -10, -20, -30, -40 };
+        float[] x = new float[4], y = new float[4];
+        projector.projectToScreen(lat, lng, x, y, new int[] { 3, 1, 0 }, 2);
+
+        assertEquals(0f, x[0]);
+        assertEquals(0f, x[2]);
+        assertEquals(projector.projectToScreen(20, -20).x(), x[1], TOLERANCE);
+        assertEquals(projector.projectToScreen(40, -40).y(), y[3], TOLERANCE);
+    }
+
+    @Test
+    void testInverseRoundTrips() {
+        Random random = new Random(13);
+        for (int i = 0; i < 10_000; i++) {
+            double lat = (i < 37) ? i * 5 - 90 : random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            Point screenPoint = projector.projectToScreen(lat, lng);
+            LatLng geo = projector.screenToGeo(screenPoint.x(), screenPoint.y());
+            assertEquals(lat, geo.lat(), 1e-6, "lat of " + lat + ", " + lng);
+            // Longitude is meaningless right at the poles
+            if (Math.abs(lat) < 90) {
+                assertEquals(lng, geo.lng(), 1e-6, "lng of " + lat + ", " + lng);
+            }
+        }
+
+        // Off the edge of the map is clamped
+        LatLng corner = projector.screenToGeo(-100_000, -100_000);
+        assertEquals(90, corner.lat(), 0);
+        assertEquals(-180, corner.lng(), 0);
+    }
+
+    @Test
+    void testGeoBoundsHoldView() {
+        Random random = new Random(14);
+        for (int view = 0; view < 200; view++) {
+            double minX = random.nextDouble() * 20000, minY = random.nextDouble() * 10000;
+            double maxX = minX + random.nextDouble() * 3000, maxY = minY + random.nextDouble() * 3000;
+            GeoBounds bounds = projector.screenToGeoBounds(minX, minY, maxX, maxY);
+
+            for (int i = 0; i < 500; i++) {
+                double lat = random.nextDouble() * 180 - 90, lng = random.nextDouble() * 360 - 180;
+                Point screenPoint = projector.projectToScreen(lat, lng);
+                boolean onScreen = screenPoint.x() >= minX && screenPoint.x() <= maxX
+                    && screenPoint.y() >= minY && screenPoint.y() <= maxY;
+                if (onScreen) {
+                    assertTrue(bounds.contains(lat, lng), lat + ", " + lng + " is on screen but not in " + bounds);
+                }
+            }
+        }
+        assertEquals(GeoBounds.WORLD, projector.screenToGeoBounds(-1000, -1000, 30000, 20000));
+    }
+
+}
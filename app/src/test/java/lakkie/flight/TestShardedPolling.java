@@ -0,0 +1,166 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneSnapshot;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.tracking.FR24TrackerClient;
+import lakkie.flight.tracking.FR24TrackerThread;
+
+import static lakkie.flight.Conditions.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TestShardedPolling {
+
+    private static final int AIRCRAFT = 2000;
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+    private SyntheticTraffic traffic;
+    private StubFR24Server server;
+    private FR24TrackerClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        traffic = new SyntheticTraffic(AIRCRAFT, 22);
+        server = new StubFR24Server(traffic);
+        client = new FR24TrackerClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    private FR24TrackerThread createTracker(PlaneBuffer planes, Runnable onUpdate) {
+        FR24TrackerThread tracker = new FR24TrackerThread(server.url(), client, projector, planes,
+            () -> GeoBounds.WORLD, onUpdate);
+        tracker.setPollInterval(region -> 50);
+        return tracker;
+    }
+
+    private static boolean hasLat(PlaneSnapshot snapshot, double lat) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.columns().lat[i] == lat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int indexIn(GeoBounds bounds) {
+        for (int i = 0; i < AIRCRAFT; i++) {
+            if (bounds.contains(traffic.lat[i], traffic.lng[i])) {
+                return i;
+            }
+        }
+        throw new AssertionError("No aircraft in " + bounds);
+    }
+
+    @Test
+    void testShardsMergeIntoOneUpdate() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        try (FR24TrackerThread tracker = createTracker(planes, () -> { })) {
+            tracker.setShards(2, 3);
+            tracker.start();
+            waitFor(() -> planes.peek().size() == AIRCRAFT);
+            // All six shards were asked for at once
+            assertTrue(server.getRequests() >= 6);
+            assertEquals(0, tracker.getConsecutiveFailures());
+        }
+    }
+
+    @Test
+    void testLateShardKeepsLastFlights() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        try (FR24TrackerThread tracker = createTracker(planes, () -> { })) {
+            tracker.setShards(1, 2);
+            tracker.start();
+            waitFor(() -> planes.peek().size() == AIRCRAFT);
+
+            // The east takes far longer than a poll to answer, but the west keeps updating
+            server.setLatency(bounds -> bounds.minLng() >= 0 ? 1000 : 0);
+            // Let requests sent before the change finish
+            Thread.sleep(100);
+            int west = indexIn(new GeoBounds(-80, -170, 80, -10));
+            int east = indexIn(new GeoBounds(-80, 10, 80, 170));
+            synchronized (server) {
+                traffic.lat[west] = 1.2345;
+                traffic.lat[east] = 5.4321;
+            }
+            waitFor(() -> hasLat(planes.peek(), 1.2345));
+            assertEquals(AIRCRAFT, planes.peek().size());
+            assertFalse(hasLat(planes.peek(), 5.4321));
+
+            // Once the slow response arrives it's used
+            waitFor(() -> hasLat(planes.peek(), 5.4321));
+            assertEquals(AIRCRAFT, planes.peek().size());
+        }
+    }
+
+    @Test
+    void testFailedShardKeepsLastFlights() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        try (FR24TrackerThread tracker = createTracker(planes, () -> { })) {
+            tracker.setShards(2, 2);
+            tracker.start();
+            waitFor(() -> planes.peek().size() == AIRCRAFT);
+
+            // Half of all requests fail, but rarely every shard at once
+            server.setErrorRate(0.5);
+            int requests = server.getRequests();
+            waitFor(() -> server.getRequests() >= requests + 40);
+            assertEquals(AIRCRAFT, planes.peek().size());
+        }
+    }
+
+    /**
+     * Compares how often aircraft are published when one part of the world answers slowly, with and without shards.
+     * Without shards every poll waits for the slow part.
+     */
+    @Test
+    @Tag("load")
+    void testShardedUpdateRate() throws IOException, InterruptedException {
+        SyntheticTraffic world = new SyntheticTraffic(20_000, 23);
+        try (StubFR24Server slowServer = new StubFR24Server(world)) {
+            slowServer.setMoving(true);
+            // Asia is slow to answer
+            GeoBounds slow = new GeoBounds(0, 90, 90, 180);
+            slowServer.setLatency(bounds -> bounds.maxLat() > slow.minLat() && bounds.maxLng() > slow.minLng() ? 1500 : 50);
+
+            System.out.printf("%7s %9s %11s %11s %9s%n", "shards", "updates", "median ms", "worst ms", "requests");
+            for (int shards : new int[] { 1, 2, 4, 8 }) {
+                List<Long> updates = new CopyOnWriteArrayList<>();
+                PlaneBuffer planes = new PlaneBuffer();
+                int firstRequest = slowServer.getRequests();
+                try (FR24TrackerThread tracker = new FR24TrackerThread(slowServer.url(), client, projector, planes,
+                        () -> GeoBounds.WORLD, () -> updates.add(System.nanoTime()))) {
+                    tracker.setPollInterval(region -> 200);
+                    tracker.setShards(shards, shards);
+                    tracker.start();
+                    Thread.sleep(10_000);
+                }
+
+                long[] gaps = new long[Math.max(1, updates.size() - 1)];
+                for (int i = 1; i < updates.size(); i++) {
+                    gaps[i - 1] = updates.get(i) - updates.get(i - 1);
+                }
+                Arrays.sort(gaps);
+                System.out.printf("%7s %9d %11.1f %11.1f %9d%n", shards + "x" + shards, updates.size(),
+                    gaps[gaps.length / 2] / 1e6, gaps[gaps.length - 1] / 1e6, slowServer.getRequests() - firstRequest);
+                assertTrue(updates.size() > 0);
+            }
+        }
+    }
+
+}
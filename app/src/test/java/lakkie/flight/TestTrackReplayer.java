@@ -0,0 +1,226 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneSnapshot;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackReplayer;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.tracking.AircraftDelta;
+import lakkie.flight.tracking.FR24TrackerThread;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestTrackReplayer {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+    @TempDir
+    Path directory;
+    private TrackStore recording;
+
+    /**
+     * Three flights for five minutes, recorded like the tracker does with a keyframe every minute. b lands after 90
+     * seconds and c takes off after 150.
+     */
+    @BeforeEach
+    void record() throws IOException {
+        recording = new TrackStore(directory, 64, 100, Long.MAX_VALUE);
+        for (long second = 0; second <= 300; second += 5) {
+            long time = START + second * 1000;
+            boolean keyframe = second % 60 == 0;
+            // a always moves, b never does
+            recording.append(time, "a", "AAA1", 10 + second / 100.0, 20, 30000, 0, 480, false);
+            if (second < 90 && (keyframe || second == 0)) {
+                recording.append(time, "b", "BBB2", -10, 40, 0, 0, 0, false);
+            } else if (second == 90) {
+                recording.append(time, "b", "", 0, 0, 0, 0, 0, true);
+            }
+            if (second == 150 || (second > 150 && keyframe)) {
+                recording.append(time, "c", "CCC3", 50, -2, 1000, 90, 150, false);
+            }
+        }
+    }
+
+    @AfterEach
+    void deleteRecording() {
+        recording.close();
+    }
+
+    private static int indexOfLat(PlaneSnapshot snapshot, double lat) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.columns().lat[i] == lat) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void testStepsThroughRecording() {
+        PlaneBuffer planes = new PlaneBuffer();
+        TrackReplayer replayer = new TrackReplayer(recording, projector, planes, () -> { });
+        assertEquals(START, replayer.getStartTime());
+        assertEquals(START + 300_000, replayer.getEndTime());
+
+        AircraftDelta delta = replayer.step(START);
+        assertEquals(2, delta.added);
+        assertEquals(2, planes.peek().size());
+
+        // a has moved, and b stays where it was last recorded
+        delta = replayer.step(START + 50_000);
+        assertEquals(1, delta.updated);
+        assertTrue(indexOfLat(planes.peek(), 10.5) >= 0);
+        assertTrue(indexOfLat(planes.peek(), -10) >= 0);
+
+        delta = replayer.step(START + 120_000);
+        assertEquals(1, delta.removed);
+        assertEquals(1, planes.peek().size());
+
+        replayer.step(START + 300_000);
+        assertEquals(2, planes.peek().size());
+        assertTrue(indexOfLat(planes.peek(), 13) >= 0);
+
+        // Nothing left to read
+        assertTrue(replayer.step(START + 400_000).isEmpty());
+    }
+
+    @Test
+    void testPublishesRemovalOnly() throws IOException {
+        try (TrackStore removals = new TrackStore(directory.resolve("removals"), 64, 100, Long.MAX_VALUE)) {
+            removals.append(START, "a", "AAA1", 10, 20, 30000, 0, 480, false);
+            removals.append(START, "b", "BBB2", -10, 40, 0, 0, 0, false);
+            // b is last, so its slot doesn't need refilling, and a isn't recorded again
+            removals.append(START + 5000, "b", "", 0, 0, 0, 0, 0, true);
+            removals.append(START + 10_000, "a", "", 0, 0, 0, 0, 0, true);
+
+            PlaneBuffer planes = new PlaneBuffer();
+            TrackReplayer replayer = new TrackReplayer(removals, projector, planes, () -> { });
+            replayer.step(START);
+            assertEquals(2, planes.peek().size());
+
+            AircraftDelta delta = replayer.step(START + 5000);
+            assertEquals(0, delta.changedCount);
+            assertEquals(1, delta.removed);
+            assertEquals(1, planes.peek().size());
+            assertEquals(-1, indexOfLat(planes.peek(), -10));
+
+            replayer.step(START + 10_000);
+            assertEquals(0, planes.peek().size());
+
+            // Nothing was tracked then either, but the seek still publishes
+            PlaneSnapshot beforeSeek = planes.peek();
+            replayer.rewind(START + 10_000);
+            replayer.step(START + 10_000);
+            assertNotSame(beforeSeek, planes.peek());
+            assertEquals(0, planes.peek().size());
+        }
+    }
+
+    @Test
+    void testSeekRebuildsFromKeyframe() {
+        PlaneBuffer planes = new PlaneBuffer();
+        TrackReplayer replayer = new TrackReplayer(recording, projector, planes, () -> { });
+        replayer.step(START + 300_000);
+
+        // Back to before b landed, which needs the keyframe a minute earlier
+        replayer.rewind(START + 70_000);
+        replayer.step(START + 70_000);
+        assertEquals(2, planes.peek().size());
+        assertTrue(indexOfLat(planes.peek(), -10) >= 0);
+        assertTrue(indexOfLat(planes.peek(), 10.7) >= 0);
+        assertEquals(-1, indexOfLat(planes.peek(), 50));
+
+        // Forward again past the end of the keyframe interval that c first appeared in
+        replayer.rewind(START + 250_000);
+        replayer.step(START + 250_000);
+        assertEquals(2, planes.peek().size());
+        assertTrue(indexOfLat(planes.peek(), 50) >= 0);
+        assertEquals(-1, indexOfLat(planes.peek(), -10));
+    }
+
+    /**
+     * Keyframes only come with a successful poll, so they drift past the interval with the poll phase and stop while
+     * polls are failing. Here polls are 7 seconds apart and fail from 100 to 165 seconds, so keyframes are at 0, 63
+     * and 168 seconds. p is parked, so it's only in keyframes.
+     */
+    @Test
+    void testSeekWithUnevenKeyframes() throws IOException {
+        try (TrackStore uneven = new TrackStore(directory.resolve("uneven"), 64, 100, Long.MAX_VALUE)) {
+            long lastKeyframe = Long.MIN_VALUE / 2;
+            for (long second = 0; second <= 240; second += 7) {
+                if (second > 100 && second < 165) {
+                    continue;
+                }
+                long time = START + second * 1000;
+                if (time - lastKeyframe >= FR24TrackerThread.KEYFRAME_INTERVAL_MS) {
+                    lastKeyframe = time;
+                    uneven.append(time, "p", "PPP4", -20, 60, 0, 0, 0, false);
+                }
+                uneven.append(time, "a", "AAA1", 10 + second / 100.0, 20, 30000, 0, 480, false);
+            }
+
+            PlaneBuffer planes = new PlaneBuffer();
+            TrackReplayer replayer = new TrackReplayer(uneven, projector, planes, () -> { });
+            // More than a keyframe interval after the keyframe at 63 seconds, in the middle of the failures
+            for (long second : new long[] { 130, 150, 165, 230 }) {
+                replayer.rewind(START + second * 1000);
+                replayer.step(START + second * 1000);
+                assertEquals(2, planes.peek().size(), "At " + second + " seconds");
+                assertTrue(indexOfLat(planes.peek(), -20) >= 0, "At " + second + " seconds");
+            }
+            assertTrue(indexOfLat(planes.peek(), 12.24) >= 0);
+        }
+    }
+
+    @Test
+    void testPicksUpRecordingStartedLater() throws IOException {
+        try (TrackStore later = new TrackStore(directory.resolve("later"), 64, 100, Long.MAX_VALUE)) {
+            PlaneBuffer planes = new PlaneBuffer();
+            TrackReplayer replayer = new TrackReplayer(later, projector, planes, () -> { });
+            assertTrue(replayer.step(START).isEmpty());
+
+            later.append(START + 1000, "a", "AAA1", 10, 20, 30000, 0, 480, false);
+            assertEquals(1, replayer.step(START + 1000).added);
+            assertEquals(1, planes.peek().size());
+        }
+    }
+
+    @Test
+    void testClockFollowsSpeed() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        CountDownLatch updated = new CountDownLatch(2);
+        try (TrackReplayer replayer = new TrackReplayer(recording, projector, planes, updated::countDown)) {
+            replayer.setSpeed(1000);
+            assertEquals(TrackReplayer.MAX_SPEED, replayer.getSpeed(), 0);
+            replayer.setSpeed(0.5);
+            assertEquals(TrackReplayer.MIN_SPEED, replayer.getSpeed(), 0);
+
+            replayer.seek(START + 100_000);
+            replayer.setSpeed(TrackReplayer.MAX_SPEED);
+            replayer.start();
+            long wallStart = System.nanoTime();
+            long replayStart = replayer.getReplayTime();
+            assertTrue(updated.await(10, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            long wallMillis = (System.nanoTime() - wallStart) / 1_000_000;
+            long replayMillis = replayer.getReplayTime() - replayStart;
+            assertEquals(wallMillis * TrackReplayer.MAX_SPEED, replayMillis, wallMillis * 10);
+            assertTrue(planes.peek().size() > 0);
+
+            replayer.seek(0);
+            assertTrue(replayer.getReplayTime() >= START);
+        }
+    }
+
+}
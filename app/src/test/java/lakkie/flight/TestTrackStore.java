@@ -0,0 +1,191 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lakkie.flight.history.TrackRecord;
+import lakkie.flight.history.TrackStore;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+public class TestTrackStore {
+
+    @TempDir
+    Path directory;
+
+    private static long segmentFiles(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.count();
+        }
+    }
+
+    @Test
+    void testAppendAndRead() throws IOException {
+        try (TrackStore store = new TrackStore(directory, 16, 4, Long.MAX_VALUE)) {
+            long position = store.append(1000, "2f9d3a1b", "BAW304", 51.4706, -0.4619, 3500, 271, 160, false);
+            store.append(1000, "2f9d3a1c", "RCHöA", -33.9461, 151.1772, 0, 15, 0, false);
+            long removed = store.append(2000, "a-much-longer-flight-id", "LONGCALLSIGN", 0, 0, 0, 0, 0, true);
+
+            TrackRecord record = new TrackRecord();
+            assertTrue(store.read(position, record));
+            assertEquals(1000, record.timeMillis);
+            assertEquals(TrackStore.NO_RECORD, record.previous);
+            assertEquals("2f9d3a1b", record.flightId);
+            assertEquals("BAW304", record.callsign);
+            assertEquals(51.4706, record.lat, 0);
+            assertEquals(-0.4619, record.lng, 0);
+            assertEquals(3500, record.altitude, 0f);
+            assertEquals(271, record.heading, 0f);
+            assertEquals(160, record.speed, 0f);
+            assertFalse(record.removed);
+
+            // Cut down to fit, with non-ASCII replaced
+            assertTrue(store.read(store.nextPosition(position), record));
+            assertEquals("RCH?A", record.callsign);
+            assertTrue(store.read(removed, record));
+            assertEquals("a-much-long", record.flightId);
+            assertEquals("LONGCALL", record.callsign);
+            assertTrue(record.removed);
+
+            assertEquals(TrackStore.NO_RECORD, store.nextPosition(removed));
+            assertEquals(3, store.size());
+        }
+    }
+
+    @Test
+    void testTrailFollowsFlight() throws IOException {
+        try (TrackStore store = new TrackStore(directory, 8, 8, Long.MAX_VALUE)) {
+            // Interleave two flights across several segments
+            for (int i = 0; i < 20; i++) {
+                store.append(i * 1000L, "a", "AAA1", i, 0, 30000, 0, 480, false);
+                store.append(i * 1000L, "b", "BBB2", -i, 0, 30000, 180, 480, false);
+            }
+            store.append(20_000, "a", "AAA1", 0, 0, 0, 0, 0, true);
+
+            double[] lat = new double[5], lng = new double[5];
+            long[] time = new long[5];
+            // Full arrays stop the trail, and the removal has no position
+            assertEquals(5, store.trail("a", 0, lat, lng, time));
+            assertArrayEquals(new double[] { 19, 18, 17, 16, 15 }, lat, 0);
+            assertEquals(19_000, time[0]);
+
+            assertEquals(3, store.trail("b", 17_000, lat, lng, time));
+            assertEquals(-19, lat[0], 0);
+            assertEquals(-17, lat[2], 0);
+            assertEquals(0, store.trail("nobody", 0, lat, lng, time));
+        }
+    }
+
+    @Test
+    void testOldSegmentsDropped() throws IOException {
+        try (TrackStore store = new TrackStore(directory, 10, 3, 60_000)) {
+            for (int i = 0; i < 45; i++) {
+                store.append(i, (i < 5) ? "early" : "late", "CS", i, 0, 0, 0, 0, false);
+            }
+            // 5 segments written, but only 3 kept
+            assertEquals(3, store.getSegmentCount());
+            assertEquals(3, segmentFiles(directory));
+            assertEquals(25, store.size());
+            assertEquals(1, store.getFlightCount());
+
+            // The trail stops where the deleted segments were
+            double[] lat = new double[100], lng = new double[100];
+            long[] time = new long[100];
+            assertEquals(25, store.trail("late", 0, lat, lng, time));
+            TrackRecord record = new TrackRecord();
+            assertTrue(store.read(store.firstPosition(), record));
+            assertEquals(20, record.timeMillis);
+
+            // A minute later everything but the segment being appended to has expired
+            store.append(104 + 60_000, "later", "CS", 0, 0, 0, 0, 0, false);
+            assertEquals(1, store.getSegmentCount());
+            assertEquals(6, store.size());
+        }
+    }
+
+    @Test
+    void testReopenContinues() throws IOException {
+        try (TrackStore store = new TrackStore(directory, 4, 10, Long.MAX_VALUE)) {
+            for (int i = 0; i < 6; i++) {
+                store.append(i, "a", "AAA1", i, i, 0, 0, 0, false);
+            }
+        }
+
+        try (TrackStore store = new TrackStore(directory, 4, 10, Long.MAX_VALUE)) {
+            assertEquals(6, store.size());
+            store.append(6, "a", "AAA1", 6, 6, 0, 0, 0, false);
+            assertEquals(2, store.getSegmentCount());
+
+            double[] lat = new double[10], lng = new double[10];
+            long[] time = new long[10];
+            assertEquals(7, store.trail("a", 0, lat, lng, time));
+            assertEquals(6, lat[0], 0);
+            assertEquals(0, lat[6], 0);
+        }
+
+        Files.write(directory.resolve("track-0000000009.seg"), new byte[] { 1, 2, 3 });
+        assertThrows(IOException.class, () -> new TrackStore(directory, 4, 10, Long.MAX_VALUE));
+    }
+
+    @Test
+    void testOpenReadOnly() throws IOException {
+        Path missing = directory.resolve("missing");
+        assertThrows(IOException.class, () -> TrackStore.openReadOnly(missing));
+        assertFalse(Files.exists(missing));
+        assertThrows(IOException.class, () -> TrackStore.openReadOnly(directory));
+
+        try (TrackStore store = new TrackStore(directory, 4, 10, Long.MAX_VALUE)) {
+            for (int i = 0; i < 6; i++) {
+                store.append(i, "a", "AAA1", i, i, 0, 0, 0, false);
+            }
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> path.toFile().setWritable(false));
+        }
+
+        try (TrackStore store = TrackStore.openReadOnly(directory)) {
+            assertEquals(6, store.size());
+            // Walks back across the segment boundary
+            TrackRecord record = new TrackRecord();
+            long expectedTime = 5;
+            for (long position = store.positionAt(5); position != TrackStore.NO_RECORD; position = store.previousPosition(position)) {
+                assertTrue(store.read(position, record));
+                assertEquals(expectedTime--, record.timeMillis);
+            }
+            assertEquals(-1, expectedTime);
+            assertThrows(IOException.class, () -> store.append(6, "a", "AAA1", 6, 6, 0, 0, 0, false));
+        }
+    }
+
+    @Test
+    void testReadOnlyFollowsWriter() throws IOException {
+        try (TrackStore writer = new TrackStore(directory, 4, 10, Long.MAX_VALUE)) {
+            for (int i = 0; i < 3; i++) {
+                writer.append(i, "a", "AAA1", i, i, 0, 0, 0, false);
+            }
+            try (TrackStore reader = TrackStore.openReadOnly(directory)) {
+                long position = reader.positionAt(2);
+                assertEquals(TrackStore.NO_RECORD, reader.nextPosition(position));
+
+                // Fills the first segment and starts two more
+                for (int i = 3; i < 10; i++) {
+                    writer.append(i, "a", "AAA1", i, i, 0, 0, 0, false);
+                }
+                assertEquals(9, reader.newestTime());
+                TrackRecord record = new TrackRecord();
+                for (long expectedTime = 3; expectedTime < 10; expectedTime++) {
+                    position = reader.nextPosition(position);
+                    assertTrue(reader.read(position, record));
+                    assertEquals(expectedTime, record.timeMillis);
+                }
+                assertEquals(TrackStore.NO_RECORD, reader.nextPosition(position));
+            }
+        }
+    }
+
+}
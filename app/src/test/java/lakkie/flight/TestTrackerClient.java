@@ -0,0 +1,94 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.tracking.FR24Query;
+import lakkie.flight.tracking.FR24QueryResult;
+import lakkie.flight.tracking.FR24TrackerClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public class TestTrackerClient {
+
+    private static final long SLOW_RESPONSE_MS = 300;
+
+    private StubFR24Server server;
+    private FR24TrackerClient client;
+    private byte[] feed;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        try (InputStream feedStream = TestTrackerClient.class.getResourceAsStream("/FR24Feed.json")) {
+            feed = feedStream.readAllBytes();
+        }
+        server = new StubFR24Server(feed);
+        client = new FR24TrackerClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    void testCompressedQuery() throws IOException, InterruptedException {
+        long sent = System.currentTimeMillis();
+        FR24QueryResult gzip = client.query(FR24Query.create(server.url()));
+        assertEquals(5, gzip.flightCount());
+        // Stamped with when the response arrived
+        assertTrue(gzip.query().flights().reportTime[4] >= sent);
+        assertEquals("2f9d3a1b", gzip.query().flights().flightId[0]);
+        assertTrue(gzip.bytesReceived() > 0 && gzip.bytesReceived() < feed.length, "Body should arrive compressed");
+        assertTrue(gzip.latencyNanos() > 0);
+
+        server.setDeflate(true);
+        FR24QueryResult deflate = client.query(FR24Query.create(server.url()));
+        assertEquals(5, deflate.flightCount());
+        assertEquals(gzip.query().flights().toList(), deflate.query().flights().toList());
+    }
+
+    @Test
+    void testConnectionReuse() throws IOException, InterruptedException {
+        FR24Query query = FR24Query.create(server.url());
+        for (int i = 0; i < 5; i++) {
+            client.query(query);
+        }
+        assertEquals(1, server.getConnections(), "Every query should reuse the same connection");
+    }
+
+    @Test
+    void testConcurrentQueries() {
+        server.setLatency(SLOW_RESPONSE_MS);
+        List<FR24Query> regions = List.of(
+            FR24Query.create(server.url() + "&region=1"),
+            FR24Query.create(server.url() + "&region=2"),
+            FR24Query.create(server.url() + "&region=3"),
+            FR24Query.create(server.url() + "&region=4"));
+
+        long start = System.nanoTime();
+        List<FR24QueryResult> results = client.queryAll(regions).join();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000L;
+
+        assertEquals(regions.size(), results.size());
+        for (FR24QueryResult result : results) {
+            assertEquals(5, result.flightCount());
+            assertTrue(result.latencyMillis() >= SLOW_RESPONSE_MS);
+        }
+        assertTrue(elapsedMs < SLOW_RESPONSE_MS * regions.size(), "Regions should be queried concurrently, took " + elapsedMs + "ms");
+    }
+
+    @Test
+    void testUnexpectedStatus() {
+        server.failNext(1, 404);
+        IOException e = assertThrows(IOException.class, () -> client.query(FR24Query.create(server.url())));
+        assertTrue(e.getMessage().contains("404"));
+    }
+
+}
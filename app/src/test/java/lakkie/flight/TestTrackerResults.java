@@ -2,20 +2,103 @@ package lakkie.flight;
 
 import org.junit.jupiter.api.Test;
 
+import lakkie.flight.globepanel.GeoBounds;
 import lakkie.flight.globepanel.MapShapeData;
 import lakkie.flight.tracking.FR24Aircraft;
+import lakkie.flight.tracking.FR24AircraftColumns;
+import lakkie.flight.tracking.FR24FeedParser;
 import lakkie.flight.tracking.FR24TrackerResults;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Scanner;
 
 public class TestTrackerResults {
 
     @Test
     void testQueryResults() throws IOException, InterruptedException {
-        // FR24TrackerResults.queryTracker(System.getProperty("FR24_SERVER_URL"));
+        SyntheticTraffic traffic = new SyntheticTraffic(2000, 20);
+        try (StubFR24Server server = new StubFR24Server(traffic)) {
+            server.setNoise(0.5);
+            List<FR24Aircraft> flights = FR24TrackerResults.queryTracker(server.url());
+            assertEquals(traffic.toList(GeoBounds.WORLD), flights);
+
+            // Every request after this fails, and queryTracker reports it rather than returning part of the list
+            server.setErrorRate(1);
+            for (int i = 0; i < 4; i++) {
+                assertThrows(IOException.class, () -> FR24TrackerResults.queryTracker(server.url()));
+            }
+            assertEquals(4, server.getErrors());
+        }
+    }
+
+    @Test
+    void testStreamingParserMatchesJsonTree() throws IOException {
+        String feed = readFeed();
+        List<FR24Aircraft> expected = FR24TrackerResults.parseFlightList(feed);
+
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        int count = new FR24FeedParser().parse(new ByteArrayInputStream(feed.getBytes(StandardCharsets.UTF_8)), flights);
+
+        assertEquals(expected.size(), count);
+        assertEquals(expected, flights.toList());
+        assertEquals("2f9d3a1b", flights.flightId[0]);
+        assertEquals(-255, flights.altitude[3], 0);
+        assertEquals(-0.015, flights.lat[4], 0);
+        assertEquals(271, flights.heading[0], 0);
+        assertEquals(160, flights.speed[0], 0);
+        assertEquals(485, flights.speed[2], 0);
+    }
+
+    @Test
+    void testStreamingParserAcrossReads() throws IOException {
+        // Hand out one byte per read so every token crosses the end of the parser's buffer
+        byte[] feed = readFeed().getBytes(StandardCharsets.UTF_8);
+        InputStream trickle = new ByteArrayInputStream(feed) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+
+        FR24FeedParser parser = new FR24FeedParser();
+        FR24AircraftColumns flights = new FR24AircraftColumns(1);
+        parser.parse(trickle, flights);
+        assertEquals(FR24TrackerResults.parseFlightList(readFeed()), flights.toList());
+
+        // Parsing again reuses the pooled strings
+        String firstCallsign = flights.callsign[0];
+        parser.parse(new ByteArrayInputStream(feed), flights);
+        assertSame(firstCallsign, flights.callsign[0]);
+    }
+
+    @Test
+    void testStreamingParserRejectsBadFlights() {
+        FR24FeedParser parser = new FR24FeedParser();
+        FR24AircraftColumns flights = new FR24AircraftColumns();
+        assertThrows(IOException.class, () -> parser.parse(stream("{\"a\": {}}"), flights));
+        assertThrows(IOException.class, () -> parser.parse(stream("{\"a\": [\"CS\", \"1\", 2, 3, 4]}"), flights));
+        assertThrows(IOException.class, () -> parser.parse(stream("{\"a\": [\"CS\", 1, 2, 3]}"), flights));
+        assertThrows(IOException.class, () -> parser.parse(stream("{\"a\": [\"CS\", 1, 2, 3, 4]"), flights));
+    }
+
+    private static InputStream stream(String contents) {
+        return new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String readFeed() {
+        StringBuilder feed = new StringBuilder();
+        try (Scanner scanner = new Scanner(TestTrackerResults.class.getResourceAsStream("/FR24Feed.json"), StandardCharsets.UTF_8)) {
+            while (scanner.hasNextLine()) {
+                feed.append(scanner.nextLine()).append('\n');
+            }
+        }
+        return feed.toString();
     }
 
-}
\ No newline at end of file
+}
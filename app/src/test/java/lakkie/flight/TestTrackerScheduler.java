@@ -0,0 +1,127 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.PlaneBuffer;
+import lakkie.flight.globepanel.PlaneSnapshot;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.history.TrackStore;
+import lakkie.flight.tracking.FR24TrackerClient;
+import lakkie.flight.tracking.FR24TrackerThread;
+
+import static lakkie.flight.Conditions.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+public class TestTrackerScheduler {
+
+    private static final long POLL_INTERVAL_MS = 40;
+
+    private StubFR24Server server;
+    private FR24TrackerClient client;
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        try (InputStream feedStream = TestTrackerScheduler.class.getResourceAsStream("/FR24Feed.json")) {
+            server = new StubFR24Server(feedStream.readAllBytes());
+        }
+        client = new FR24TrackerClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    private FR24TrackerThread createTracker(PlaneBuffer planes) {
+        FR24TrackerThread tracker = new FR24TrackerThread(server.url(), client, new ProjectionConverter(20450, 10350, 0, 0),
+            planes, () -> GeoBounds.WORLD, () -> { });
+        tracker.setPollInterval(region -> POLL_INTERVAL_MS);
+        return tracker;
+    }
+
+    @Test
+    void testPollsAtFixedRate() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        List<Long> requests = server.getRequestTimes();
+        int polls;
+        try (FR24TrackerThread tracker = createTracker(planes)) {
+            tracker.start();
+            // The first poll also has to connect
+            waitFor(() -> planes.peek().size() == 5);
+            int firstPoll = requests.size() - 1;
+            waitFor(() -> requests.size() >= firstPoll + 6);
+
+            // Polls never come closer together than the interval allows. A loaded machine can only spread them out,
+            // apart from jitter in when each request reaches the server.
+            for (int i = firstPoll + 1; i < firstPoll + 6; i++) {
+                long gap = requests.get(i) - requests.get(i - 1);
+                assertTrue(gap >= POLL_INTERVAL_MS / 2, "Polls " + gap + "ms apart");
+            }
+        }
+        polls = server.getRequests();
+        assertEquals(5, planes.peek().size());
+
+        // Nothing polls after close
+        Thread.sleep(POLL_INTERVAL_MS * 3);
+        assertEquals(polls, server.getRequests());
+    }
+
+    @Test
+    void testBacksOffAndKeepsLastFlights() throws InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        try (FR24TrackerThread tracker = createTracker(planes)) {
+            tracker.start();
+            waitFor(() -> planes.peek().size() == 5);
+            PlaneSnapshot lastGood = planes.peek();
+
+            server.failNext(5, 503);
+            List<Long> requests = server.getRequestTimes();
+            int firstFailure = requests.size();
+            waitFor(() -> tracker.getConsecutiveFailures() >= 5);
+            assertSame(lastGood, planes.peek(), "Failed polls shouldn't publish anything");
+
+            // Each wait is at least half the ceiling, which doubles every failure
+            long firstGap = requests.get(firstFailure + 1) - requests.get(firstFailure);
+            long lastGap = requests.get(firstFailure + 4) - requests.get(firstFailure + 3);
+            assertTrue(lastGap >= POLL_INTERVAL_MS * 8, "Last backoff was " + lastGap + "ms");
+            assertTrue(lastGap > firstGap, firstGap + "ms then " + lastGap + "ms");
+
+            waitFor(() -> tracker.getConsecutiveFailures() == 0);
+            assertEquals(5, planes.peek().size());
+        }
+    }
+
+    @Test
+    void testRecordsHistory() throws IOException, InterruptedException {
+        PlaneBuffer planes = new PlaneBuffer();
+        try (TrackStore history = new TrackStore(directory, 64, 2, Long.MAX_VALUE)) {
+            try (FR24TrackerThread tracker = createTracker(planes)) {
+                tracker.setHistory(history);
+                tracker.start();
+                waitFor(() -> planes.peek().size() == 5);
+                int firstPolls = server.getRequests();
+                waitFor(() -> server.getRequests() >= firstPolls + 3);
+            }
+
+            // The first poll is a keyframe, and nothing changes after it
+            assertEquals(5, history.size());
+            double[] lat = new double[4], lng = new double[4];
+            long[] time = new long[4];
+            assertEquals(1, history.trail("2f9d3a1b", 0, lat, lng, time));
+            assertEquals(51.4706, lat[0], 0);
+        }
+    }
+
+}
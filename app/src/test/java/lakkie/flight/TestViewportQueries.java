@@ -0,0 +1,80 @@
+package lakkie.flight;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import lakkie.flight.globepanel.GeoBounds;
+import lakkie.flight.globepanel.ProjectionConverter;
+import lakkie.flight.globepanel.ProjectionConverter.Point;
+import lakkie.flight.tracking.FR24AircraftColumns;
+import lakkie.flight.tracking.FR24Query;
+import lakkie.flight.tracking.FR24QueryResult;
+import lakkie.flight.tracking.FR24TrackerClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+
+/**
+ * Queries a stand-in server holding a world of aircraft, which only returns the ones inside the bounds parameter.
+ */
+public class TestViewportQueries {
+
+    private static final int WORLD_AIRCRAFT = 20_000;
+    private static final int VIEW_WIDTH = 1280, VIEW_HEIGHT = 720;
+
+    private final ProjectionConverter projector = new ProjectionConverter(20450, 10350, 0, 0);
+    private SyntheticTraffic traffic;
+    private StubFR24Server server;
+    private FR24TrackerClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        traffic = new SyntheticTraffic(WORLD_AIRCRAFT, 15);
+        server = new StubFR24Server(traffic);
+        client = new FR24TrackerClient();
+    }
+
+    @AfterEach
+    void stopServer() {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * The region the tracker would query for a view centred on a point at some zoom
+     */
+    private GeoBounds viewBounds(double centreLat, double centreLng, double zoom) {
+        Point centre = projector.projectToScreen(centreLat, centreLng);
+        double halfWidth = VIEW_WIDTH / 2 / zoom, halfHeight = VIEW_HEIGHT / 2 / zoom;
+        return projector.screenToGeoBounds(centre.x() - halfWidth, centre.y() - halfHeight,
+            centre.x() + halfWidth, centre.y() + halfHeight).padded(0.25);
+    }
+
+    @Test
+    void testBytesFallWithZoom() throws IOException, InterruptedException {
+        FR24Query query = FR24Query.create(server.url());
+        FR24QueryResult world = client.query(query);
+        assertEquals(WORLD_AIRCRAFT, world.flightCount());
+
+        long previousBytes = world.bytesReceived();
+        for (double zoom : new double[] { 0.5, 1, 4, 10 }) {
+            GeoBounds bounds = viewBounds(50, 10, zoom);
+            FR24QueryResult result = client.query(query.withBounds(bounds));
+
+            // Exactly the aircraft in the region came back
+            FR24AircraftColumns flights = result.query().flights();
+            int expected = traffic.countIn(bounds);
+            assertEquals(expected, result.flightCount(), 0.01 * expected + 1);
+            for (int i = 0; i < flights.size; i++) {
+                assertTrue(bounds.padded(0.01).contains(flights.lat[i], flights.lng[i]));
+            }
+
+            assertTrue(result.bytesReceived() < previousBytes, "Zooming in to " + zoom + " should transfer less");
+            previousBytes = result.bytesReceived();
+        }
+        assertTrue(previousBytes * 50 < world.bytesReceived(), "Zoomed in query was " + previousBytes + " bytes");
+    }
+
+}